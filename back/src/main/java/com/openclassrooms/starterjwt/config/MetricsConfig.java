@@ -0,0 +1,20 @@
+package com.openclassrooms.starterjwt.config;
+
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Records the methods annotated with {@link io.micrometer.core.annotation.Timed} (services and mappers)
+ * as timers tagged with their class, method and thrown exception. Only counts and totals are kept,
+ * no histogram, so the timers stay cheap enough to remain on under full load.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+}
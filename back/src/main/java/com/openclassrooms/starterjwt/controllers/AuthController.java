@@ -1,11 +1,17 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.CrossOrigin;
@@ -17,11 +23,19 @@ import org.springframework.web.bind.annotation.RestController;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.request.TokenRefreshRequest;
 import com.openclassrooms.starterjwt.payload.response.JwtResponse;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.RefreshTokenStore;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import com.openclassrooms.starterjwt.security.services.LoginAttemptLimiter;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -31,58 +45,130 @@ public class AuthController {
     private final JwtUtils jwtUtils;
     private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+    private final RefreshTokenStore refreshTokenStore;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final LoginAttemptLimiter loginAttemptLimiter;
+    private final RequestExecutor requestExecutor;
+    private final Timer loginSucceeded;
+    private final Timer loginFailed;
 
     AuthController(AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
             JwtUtils jwtUtils,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            TokenRevocationRegistry tokenRevocationRegistry,
+            RefreshTokenStore refreshTokenStore,
+            UserDetailsServiceImpl userDetailsService,
+            LoginAttemptLimiter loginAttemptLimiter,
+            RequestExecutor requestExecutor,
+            MeterRegistry meterRegistry) {
         this.authenticationManager = authenticationManager;
         this.jwtUtils = jwtUtils;
         this.passwordEncoder = passwordEncoder;
         this.userRepository = userRepository;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
+        this.refreshTokenStore = refreshTokenStore;
+        this.userDetailsService = userDetailsService;
+        this.loginAttemptLimiter = loginAttemptLimiter;
+        this.requestExecutor = requestExecutor;
+        this.loginSucceeded = loginTimer(meterRegistry, "success");
+        this.loginFailed = loginTimer(meterRegistry, "failure");
+    }
+
+    private static Timer loginTimer(MeterRegistry meterRegistry, String outcome) {
+        return Timer.builder("auth.login")
+                .tag("outcome", outcome)
+                .description("Time spent checking the credentials of a login, password hashing included")
+                .register(meterRegistry);
     }
 
     @PostMapping("/login")
-    public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest) {
+    public CompletableFuture<ResponseEntity<?>> authenticateUser(@Valid @RequestBody LoginRequest loginRequest,
+            HttpServletRequest request) {
+        // Checked on the servlet thread: an attempt over the limit never waits for the executor nor hashes the password
+        loginAttemptLimiter.acquire(loginRequest.getEmail(), request.getRemoteAddr());
 
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+        return this.requestExecutor.supply(() -> {
+            long start = System.nanoTime();
+            Authentication authentication;
+            try {
+                authentication = authenticationManager.authenticate(
+                        new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword()));
+            } catch (AuthenticationException e) {
+                loginFailed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+            loginSucceeded.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
 
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-        String jwt = jwtUtils.generateJwtToken(authentication);
-        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
+            SecurityContextHolder.getContext().setAuthentication(authentication);
 
-        boolean isAdmin = false;
-        User user = this.userRepository.findByEmail(userDetails.getUsername()).orElse(null);
-        if (user != null) {
-            isAdmin = user.isAdmin();
-        }
+            return ResponseEntity.ok(issueTokens((UserDetailsImpl) authentication.getPrincipal()));
+        });
+    }
+
+    /**
+     * Exchanges a refresh token for a new access token and a new refresh token, without checking the
+     * password again. The refresh token is single-use: presenting it a second time answers 401.
+     */
+    @PostMapping("/refresh")
+    public CompletableFuture<ResponseEntity<?>> refreshToken(@Valid @RequestBody TokenRefreshRequest refreshRequest) {
+        return this.requestExecutor.supply(() -> {
+            Long userId = refreshTokenStore.consume(refreshRequest.getRefreshToken());
+            UserDetailsImpl userDetails = userId != null && !tokenRevocationRegistry.isRevoked(userId)
+                    ? userDetailsService.loadUserById(userId)
+                    : null;
+            if (userDetails == null) {
+                return ResponseEntity
+                        .status(HttpStatus.UNAUTHORIZED)
+                        .body(new MessageResponse("Error: Refresh token is invalid or expired!"));
+            }
+
+            return ResponseEntity.ok(issueTokens(userDetails));
+        });
+    }
 
-        return ResponseEntity.ok(new JwtResponse(jwt,
+    @PostMapping("/logout")
+    public CompletableFuture<ResponseEntity<?>> logoutUser(@Valid @RequestBody TokenRefreshRequest logoutRequest) {
+        return this.requestExecutor.supply(() -> {
+            refreshTokenStore.consume(logoutRequest.getRefreshToken());
+
+            return ResponseEntity.ok(new MessageResponse("User logged out successfully!"));
+        });
+    }
+
+    private JwtResponse issueTokens(UserDetailsImpl userDetails) {
+        String jwt = jwtUtils.generateJwtToken(userDetails,
+                tokenRevocationRegistry.issuedVersion(userDetails.getId()));
+
+        return new JwtResponse(jwt,
+                refreshTokenStore.issue(userDetails.getId()),
                 userDetails.getId(),
                 userDetails.getUsername(),
                 userDetails.getFirstName(),
                 userDetails.getLastName(),
-                isAdmin));
+                Boolean.TRUE.equals(userDetails.getAdmin()));
     }
 
     @PostMapping("/register")
-    public ResponseEntity<?> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
-        if (userRepository.existsByEmail(signUpRequest.getEmail())) {
-            return ResponseEntity
-                    .badRequest()
-                    .body(new MessageResponse("Error: Email is already taken!"));
-        }
-
-        // Create new user's account
-        User user = new User(signUpRequest.getEmail(),
-                signUpRequest.getLastName(),
-                signUpRequest.getFirstName(),
-                passwordEncoder.encode(signUpRequest.getPassword()),
-                false);
-
-        userRepository.save(user);
-
-        return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+    public CompletableFuture<ResponseEntity<?>> registerUser(@Valid @RequestBody SignupRequest signUpRequest) {
+        return this.requestExecutor.supply(() -> {
+            if (userRepository.existsByEmail(signUpRequest.getEmail())) {
+                return ResponseEntity
+                        .badRequest()
+                        .body(new MessageResponse("Error: Email is already taken!"));
+            }
+
+            // Create new user's account
+            User user = new User(signUpRequest.getEmail(),
+                    signUpRequest.getLastName(),
+                    signUpRequest.getFirstName(),
+                    passwordEncoder.encode(signUpRequest.getPassword()),
+                    false);
+
+            userRepository.save(user);
+
+            return ResponseEntity.ok(new MessageResponse("User registered successfully!"));
+        });
     }
 }
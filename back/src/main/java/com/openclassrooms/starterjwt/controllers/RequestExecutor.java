@@ -0,0 +1,69 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool running the controller work (database calls, mapping, hashing) off the servlet threads:
+ * controllers return the CompletableFuture of {@link #supply(Supplier)} and Spring MVC completes the
+ * request asynchronously. The security context of the request is propagated to the task.
+ * When both the pool and its queue are full, the request is rejected with 503 instead of waiting.
+ * Pool and queue usage are published as the {@code executor.*} metrics of the "requests" executor.
+ */
+@Component
+public class RequestExecutor implements MeterBinder, DisposableBean {
+    private final ThreadPoolExecutor threadPoolExecutor;
+
+    private final Executor executor;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RequestExecutor(@Value("${oc.app.requestPoolSize:32}") int poolSize,
+                           @Value("${oc.app.requestQueueCapacity:500}") int queueCapacity) {
+        this.threadPoolExecutor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("request-"));
+        this.threadPoolExecutor.allowCoreThreadTimeOut(true);
+        this.executor = new DelegatingSecurityContextExecutor(this.threadPoolExecutor);
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, this.executor);
+        } catch (RejectedExecutionException e) {
+            this.rejected.incrementAndGet();
+            throw new ServiceUnavailableException();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(this.threadPoolExecutor, "requests", Tags.empty()).bindTo(registry);
+        FunctionCounter.builder("executor.rejected", this.rejected, AtomicLong::doubleValue)
+                .tag("name", "requests")
+                .description("Requests rejected because the request executor was saturated")
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        this.threadPoolExecutor.shutdown();
+    }
+}
@@ -1,16 +1,38 @@
 package com.openclassrooms.starterjwt.controllers;
 
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.services.ResourceVersion;
+import com.openclassrooms.starterjwt.services.SessionListSnapshot;
+import com.openclassrooms.starterjwt.services.SessionPage;
 import com.openclassrooms.starterjwt.services.SessionService;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -19,92 +41,242 @@ import java.util.List;
 public class SessionController {
     private final SessionMapper sessionMapper;
     private final SessionService sessionService;
+    private final RequestExecutor requestExecutor;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+
+    @Value("${oc.app.sessionExportBatchSize:500}")
+    private int exportBatchSize = 500;
 
 
     public SessionController(SessionService sessionService,
-                             SessionMapper sessionMapper) {
+                             SessionMapper sessionMapper,
+                             RequestExecutor requestExecutor,
+                             ObjectMapper objectMapper,
+                             Validator validator) {
         this.sessionMapper = sessionMapper;
         this.sessionService = sessionService;
+        this.requestExecutor = requestExecutor;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
     }
 
+    /**
+     * Answers 304 Not Modified from the session update date alone when the client already has it.
+     */
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+    public CompletableFuture<ResponseEntity<?>> findById(@PathVariable("id") String id, WebRequest request) {
+        return this.requestExecutor.supply(() -> {
+            try {
+                ResourceVersion version = this.sessionService.getVersion(Long.valueOf(id));
+                if (version != null && request.checkNotModified(version.getETag(), version.getLastModified())) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+                }
 
-            if (session == null) {
-                return ResponseEntity.notFound().build();
-            }
+                Session session = this.sessionService.getById(Long.valueOf(id));
 
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+                if (session == null) {
+                    return ResponseEntity.notFound().build();
+                }
+
+                List<Session> sessions = List.of(session);
+                return ResponseEntity.ok().body(this.sessionMapper.toDto(session, this.sessionService.findParticipantIds(sessions)));
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
+    /**
+     * The full listing is served from the in-memory snapshot when it is enabled. Otherwise the listings
+     * are versioned by the session count and latest update, checked before anything is loaded.
+     * {@code from}/{@code to} (ISO-8601 instants, to exclusive) and {@code teacherId} search the sessions
+     * of a calendar window instead; they cannot be combined with the cursor pages.
+     */
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Session> sessions = this.sessionService.findAll();
+    public CompletableFuture<ResponseEntity<?>> findAll(@RequestParam(value = "cursor", required = false) String cursor,
+                                                        @RequestParam(value = "size", required = false) Integer size,
+                                                        @RequestParam(value = "from", required = false) Instant from,
+                                                        @RequestParam(value = "to", required = false) Instant to,
+                                                        @RequestParam(value = "teacherId", required = false) Long teacherId,
+                                                        WebRequest request) {
+        return this.requestExecutor.supply(() -> {
+            boolean paged = cursor != null || size != null;
+            boolean filtered = from != null || to != null || teacherId != null;
+            if (paged && filtered) {
+                return ResponseEntity.badRequest().build();
+            }
+
+            if (!paged && !filtered) {
+                SessionListSnapshot.Rendered rendered = this.sessionService.findAllRendered();
+                if (rendered != null) {
+                    if (request.checkNotModified(rendered.getETag())) {
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+                    }
+                    return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(rendered.getJson());
+                }
+            }
+
+            ResourceVersion version = this.sessionService.getVersion();
+            if (request.checkNotModified(version.getETag(), version.getLastModified())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+
+            if (filtered) {
+                List<Session> sessions = this.sessionService.search(
+                        from == null ? null : Date.from(from), to == null ? null : Date.from(to), teacherId);
+
+                return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions, this.sessionService.findParticipantIds(sessions)));
+            }
+
+            if (paged) {
+                SessionPage page = this.sessionService.findPage(cursor, size);
+                List<SessionDto> sessionDtos = this.sessionMapper.toDto(page.getSessions(), this.sessionService.findParticipantIds(page.getSessions()));
+
+                return ResponseEntity.ok().body(new SessionPageDto(sessionDtos, page.getNextCursor()));
+            }
+
+            List<Session> sessions = this.sessionService.findAll();
 
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions));
+            return ResponseEntity.ok().body(this.sessionMapper.toDto(sessions, this.sessionService.findParticipantIds(sessions)));
+        });
     }
 
     @PostMapping()
-    public ResponseEntity<?> create(@Valid @RequestBody SessionDto sessionDto) {
-        log.info(sessionDto);
+    public CompletableFuture<ResponseEntity<?>> create(@Valid @RequestBody SessionDto sessionDto) {
+        return this.requestExecutor.supply(() -> {
+            Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
+
+            log.debug("Session created: id={}", session.getId());
+            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+        });
+    }
+
+    /**
+     * Creates the sessions of a JSON array read one element at a time from the request body. Each one is
+     * validated like in {@link #create(SessionDto)}; the first invalid element rejects the whole import.
+     */
+    @PostMapping("/bulk")
+    public CompletableFuture<ResponseEntity<?>> createAll(InputStream body) {
+        return this.requestExecutor.supply(() -> {
+            try (MappingIterator<SessionDto> sessionDtos = this.objectMapper.readerFor(SessionDto.class).readValues(body)) {
+                int created = this.sessionService.createAll(new Iterator<>() {
+                    @Override
+                    public boolean hasNext() {
+                        try {
+                            return sessionDtos.hasNextValue();
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
 
-        Session session = this.sessionService.create(this.sessionMapper.toEntity(sessionDto));
+                    @Override
+                    public Session next() {
+                        try {
+                            SessionDto sessionDto = sessionDtos.nextValue();
+                            if (!validator.validate(sessionDto).isEmpty()) {
+                                throw new BadRequestException();
+                            }
+                            return sessionMapper.toEntity(sessionDto);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                });
 
-        log.info(session);
-        return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+                return ResponseEntity.ok().body(new MessageResponse(created + " sessions created"));
+            } catch (IOException | UncheckedIOException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
-    @PutMapping("{id}")
-    public ResponseEntity<?> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
+    /**
+     * Streams every session as a JSON array, NDJSON or CSV, written batch by batch as they are read.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "format", defaultValue = "json") String format) {
+        SessionExportWriter.Format exportFormat;
         try {
-            Session session = this.sessionService.update(Long.parseLong(id), this.sessionMapper.toEntity(sessionDto));
-
-            return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
-        } catch (NumberFormatException e) {
+            exportFormat = SessionExportWriter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
+
+        StreamingResponseBody body = outputStream -> {
+            SessionExportWriter writer = SessionExportWriter.open(exportFormat, this.objectMapper, outputStream);
+            this.sessionService.exportAll(this.exportBatchSize, (sessions, participantIds) -> {
+                try {
+                    for (SessionDto sessionDto : this.sessionMapper.toDto(sessions, participantIds)) {
+                        writer.write(sessionDto);
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            // Not reached when the export fails: the response is already committed, and the exception makes
+            // the container abort it rather than end a truncated document the client would take as complete.
+            writer.finish();
+        };
+
+        return ResponseEntity.ok().contentType(exportFormat.getMediaType()).body(body);
     }
 
-    @DeleteMapping("{id}")
-    public ResponseEntity<?> save(@PathVariable("id") String id) {
-        try {
-            Session session = this.sessionService.getById(Long.valueOf(id));
+    @PutMapping("{id}")
+    public CompletableFuture<ResponseEntity<?>> update(@PathVariable("id") String id, @Valid @RequestBody SessionDto sessionDto) {
+        return this.requestExecutor.supply(() -> {
+            try {
+                Session session = this.sessionService.update(Long.parseLong(id), this.sessionMapper.toEntity(sessionDto));
 
-            if (session == null) {
-                return ResponseEntity.notFound().build();
+                return ResponseEntity.ok().body(this.sessionMapper.toDto(session));
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
             }
+        });
+    }
 
-            this.sessionService.delete(Long.parseLong(id));
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+    @DeleteMapping("{id}")
+    public CompletableFuture<ResponseEntity<?>> save(@PathVariable("id") String id) {
+        return this.requestExecutor.supply(() -> {
+            try {
+                Session session = this.sessionService.getById(Long.valueOf(id));
+
+                if (session == null) {
+                    return ResponseEntity.notFound().build();
+                }
+
+                this.sessionService.delete(Long.parseLong(id));
+                return ResponseEntity.ok().build();
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
     @PostMapping("{id}/participate/{userId}")
-    public ResponseEntity<?> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
-        try {
-            this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
+    public CompletableFuture<ResponseEntity<?>> participate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        return this.requestExecutor.supply(() -> {
+            try {
+                this.sessionService.participate(Long.parseLong(id), Long.parseLong(userId));
 
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+                return ResponseEntity.ok().build();
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
     @DeleteMapping("{id}/participate/{userId}")
-    public ResponseEntity<?> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
-        try {
-            this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
+    public CompletableFuture<ResponseEntity<?>> noLongerParticipate(@PathVariable("id") String id, @PathVariable("userId") String userId) {
+        return this.requestExecutor.supply(() -> {
+            try {
+                this.sessionService.noLongerParticipate(Long.parseLong(id), Long.parseLong(userId));
 
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+                return ResponseEntity.ok().build();
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 }
@@ -0,0 +1,157 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Writes the sessions of an export to the response as they are read, in one of the {@link Format}s.
+ * The document is only ended by {@link #finish()}: an export failing halfway is left unterminated.
+ */
+abstract class SessionExportWriter {
+
+    enum Format {
+        JSON(MediaType.APPLICATION_JSON),
+        NDJSON(MediaType.parseMediaType("application/x-ndjson")),
+        CSV(MediaType.parseMediaType("text/csv;charset=UTF-8"));
+
+        private final MediaType mediaType;
+
+        Format(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+
+        MediaType getMediaType() {
+            return mediaType;
+        }
+    }
+
+    static SessionExportWriter open(Format format, ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+        switch (format) {
+            case NDJSON:
+                return new NdjsonWriter(objectMapper, outputStream);
+            case CSV:
+                return new CsvWriter(outputStream);
+            default:
+                return new JsonArrayWriter(objectMapper, outputStream);
+        }
+    }
+
+    abstract void write(SessionDto sessionDto) throws IOException;
+
+    /**
+     * Sends what was written so far to the client, once per batch of sessions.
+     */
+    abstract void flush() throws IOException;
+
+    /**
+     * Ends the document and closes the stream, once every session is written.
+     */
+    abstract void finish() throws IOException;
+
+    private static class JsonArrayWriter extends SessionExportWriter {
+        private final JsonGenerator generator;
+
+        JsonArrayWriter(ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(outputStream);
+            this.generator.writeStartArray();
+        }
+
+        @Override
+        void write(SessionDto sessionDto) throws IOException {
+            this.generator.writeObject(sessionDto);
+        }
+
+        @Override
+        void flush() throws IOException {
+            this.generator.flush();
+        }
+
+        @Override
+        void finish() throws IOException {
+            this.generator.writeEndArray();
+            this.generator.close();
+        }
+    }
+
+    private static class NdjsonWriter extends SessionExportWriter {
+        private final JsonGenerator generator;
+
+        NdjsonWriter(ObjectMapper objectMapper, OutputStream outputStream) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(outputStream);
+            this.generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        void write(SessionDto sessionDto) throws IOException {
+            this.generator.writeObject(sessionDto);
+            this.generator.writeRaw('\n');
+        }
+
+        @Override
+        void flush() throws IOException {
+            this.generator.flush();
+        }
+
+        @Override
+        void finish() throws IOException {
+            this.generator.close();
+        }
+    }
+
+    /**
+     * One row per session; participant ids are separated by spaces in the users column.
+     */
+    private static class CsvWriter extends SessionExportWriter {
+        private final Writer writer;
+
+        CsvWriter(OutputStream outputStream) throws IOException {
+            this.writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            this.writer.write("id,name,date,teacher_id,description,users,capacity,createdAt,updatedAt\r\n");
+        }
+
+        @Override
+        void write(SessionDto sessionDto) throws IOException {
+            List<Long> users = sessionDto.getUsers() == null ? List.of() : sessionDto.getUsers();
+            this.writer.write(String.join(",",
+                    field(sessionDto.getId()),
+                    field(sessionDto.getName()),
+                    field(sessionDto.getDate() == null ? null : sessionDto.getDate().toInstant()),
+                    field(sessionDto.getTeacher_id()),
+                    field(sessionDto.getDescription()),
+                    field(users.stream().map(String::valueOf).collect(Collectors.joining(" "))),
+                    field(sessionDto.getCapacity()),
+                    field(sessionDto.getCreatedAt()),
+                    field(sessionDto.getUpdatedAt())));
+            this.writer.write("\r\n");
+        }
+
+        private static String field(Object value) {
+            String text = Objects.toString(value, "");
+            if (text.contains(",") || text.contains("\"") || text.contains("\n") || text.contains("\r")) {
+                return '"' + text.replace("\"", "\"\"") + '"';
+            }
+            return text;
+        }
+
+        @Override
+        void flush() throws IOException {
+            this.writer.flush();
+        }
+
+        @Override
+        void finish() throws IOException {
+            this.writer.close();
+        }
+    }
+}
@@ -2,10 +2,15 @@ package com.openclassrooms.starterjwt.controllers;
 
 import com.openclassrooms.starterjwt.mapper.TeacherMapper;
 import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.services.ResourceVersion;
 import com.openclassrooms.starterjwt.services.TeacherService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -13,33 +18,50 @@ import java.util.List;
 public class TeacherController {
     private final TeacherMapper teacherMapper;
     private final TeacherService teacherService;
+    private final RequestExecutor requestExecutor;
 
 
     public TeacherController(TeacherService teacherService,
-                             TeacherMapper teacherMapper) {
+                             TeacherMapper teacherMapper,
+                             RequestExecutor requestExecutor) {
         this.teacherMapper = teacherMapper;
         this.teacherService = teacherService;
+        this.requestExecutor = requestExecutor;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            Teacher teacher = this.teacherService.findById(Long.valueOf(id));
+    public CompletableFuture<ResponseEntity<?>> findById(@PathVariable("id") String id, WebRequest request) {
+        return this.requestExecutor.supply(() -> {
+            try {
+                ResourceVersion version = this.teacherService.getVersion(Long.valueOf(id));
+                if (version != null && request.checkNotModified(version.getETag(), version.getLastModified())) {
+                    return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+                }
 
-            if (teacher == null) {
-                return ResponseEntity.notFound().build();
-            }
+                Teacher teacher = this.teacherService.findById(Long.valueOf(id));
+
+                if (teacher == null) {
+                    return ResponseEntity.notFound().build();
+                }
 
-            return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+                return ResponseEntity.ok().body(this.teacherMapper.toDto(teacher));
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
     @GetMapping()
-    public ResponseEntity<?> findAll() {
-        List<Teacher> teachers = this.teacherService.findAll();
+    public CompletableFuture<ResponseEntity<?>> findAll(WebRequest request) {
+        return this.requestExecutor.supply(() -> {
+            ResourceVersion version = this.teacherService.getVersion();
+            if (request.checkNotModified(version.getETag(), version.getLastModified())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+
+            List<Teacher> teachers = this.teacherService.findAll();
 
-        return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
+            return ResponseEntity.ok().body(this.teacherMapper.toDto(teachers));
+        });
     }
 }
@@ -1,7 +1,12 @@
 package com.openclassrooms.starterjwt.controllers;
 
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.dto.SessionPageDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
 import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.services.SessionPage;
+import com.openclassrooms.starterjwt.services.SessionService;
 import com.openclassrooms.starterjwt.services.UserService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -9,7 +14,9 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 @CrossOrigin(origins = "*", maxAge = 3600)
 @RestController
@@ -17,48 +24,85 @@ import java.util.Objects;
 public class UserController {
     private final UserMapper userMapper;
     private final UserService userService;
+    private final SessionMapper sessionMapper;
+    private final SessionService sessionService;
+    private final RequestExecutor requestExecutor;
 
 
     public UserController(UserService userService,
-                             UserMapper userMapper) {
+                             UserMapper userMapper,
+                             SessionService sessionService,
+                             SessionMapper sessionMapper,
+                             RequestExecutor requestExecutor) {
         this.userMapper = userMapper;
         this.userService = userService;
+        this.sessionService = sessionService;
+        this.sessionMapper = sessionMapper;
+        this.requestExecutor = requestExecutor;
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<?> findById(@PathVariable("id") String id) {
-        try {
-            User user = this.userService.findById(Long.valueOf(id));
+    public CompletableFuture<ResponseEntity<?>> findById(@PathVariable("id") String id) {
+        return this.requestExecutor.supply(() -> {
+            try {
+                User user = this.userService.findById(Long.valueOf(id));
 
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
+                if (user == null) {
+                    return ResponseEntity.notFound().build();
+                }
 
-            return ResponseEntity.ok().body(this.userMapper.toDto(user));
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+                return ResponseEntity.ok().body(this.userMapper.toDto(user));
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 
     @DeleteMapping("{id}")
-    public ResponseEntity<?> save(@PathVariable("id") String id) {
-        try {
-            User user = this.userService.findById(Long.valueOf(id));
+    public CompletableFuture<ResponseEntity<?>> save(@PathVariable("id") String id) {
+        return this.requestExecutor.supply(() -> {
+            try {
+                User user = this.userService.findById(Long.valueOf(id));
 
-            if (user == null) {
-                return ResponseEntity.notFound().build();
-            }
+                if (user == null) {
+                    return ResponseEntity.notFound().build();
+                }
+
+                UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
 
-            UserDetails userDetails = (UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal();
+                if(!Objects.equals(userDetails.getUsername(), user.getEmail())) {
+                    return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+                }
 
-            if(!Objects.equals(userDetails.getUsername(), user.getEmail())) {
-                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+                this.userService.delete(Long.parseLong(id));
+                return ResponseEntity.ok().build();
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
             }
+        });
+    }
+
+    /**
+     * The sessions of a user, {@code when=upcoming} (default) or {@code when=past}, one cursor page at a time.
+     */
+    @GetMapping("{id}/sessions")
+    public CompletableFuture<ResponseEntity<?>> findSessions(@PathVariable("id") String id,
+                                                             @RequestParam(value = "when", defaultValue = "upcoming") String when,
+                                                             @RequestParam(value = "cursor", required = false) String cursor,
+                                                             @RequestParam(value = "size", required = false) Integer size) {
+        return this.requestExecutor.supply(() -> {
+            try {
+                if (!"upcoming".equals(when) && !"past".equals(when)) {
+                    return ResponseEntity.badRequest().build();
+                }
 
-            this.userService.delete(Long.parseLong(id));
-            return ResponseEntity.ok().build();
-        } catch (NumberFormatException e) {
-            return ResponseEntity.badRequest().build();
-        }
+                SessionPage page = this.sessionService.findPageByUser(Long.valueOf(id), "upcoming".equals(when), cursor, size);
+                List<SessionDto> sessionDtos = this.sessionMapper.toDto(page.getSessions(), this.sessionService.findParticipantIds(page.getSessions()));
+
+                return ResponseEntity.ok().body(new SessionPageDto(sessionDtos, page.getNextCursor()));
+            } catch (NumberFormatException e) {
+                return ResponseEntity.badRequest().build();
+            }
+        });
     }
 }
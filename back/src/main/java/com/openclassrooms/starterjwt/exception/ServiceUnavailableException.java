@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * 503 answered when a bounded executor sheds load; the Retry-After header tells the client when to come back.
+ */
+public class ServiceUnavailableException extends ResponseStatusException {
+    private final long retryAfterSeconds;
+
+    public ServiceUnavailableException() {
+        this(1);
+    }
+
+    public ServiceUnavailableException(long retryAfterSeconds) {
+        super(HttpStatus.SERVICE_UNAVAILABLE);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public HttpHeaders getResponseHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(this.retryAfterSeconds));
+        return headers;
+    }
+}
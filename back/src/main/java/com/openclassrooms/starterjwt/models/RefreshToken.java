@@ -0,0 +1,43 @@
+package com.openclassrooms.starterjwt.models;
+
+import lombok.*;
+import lombok.experimental.Accessors;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * A refresh token, known only by the SHA-256 of its value. Rows are inserted then deleted, never updated.
+ */
+@Entity
+@Table(name = "REFRESH_TOKENS")
+@Data
+@Accessors(chain = true)
+@EqualsAndHashCode(of = {"tokenHash"})
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class RefreshToken implements Persistable<String> {
+    @Id
+    @Column(name = "token_hash")
+    private String tokenHash;
+
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "expires_at")
+    private LocalDateTime expiresAt;
+
+    @Override
+    public String getId() {
+        return tokenHash;
+    }
+
+    // The hash is assigned, not generated: without this, save() would select the row before inserting it.
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
@@ -3,6 +3,7 @@ package com.openclassrooms.starterjwt.models;
 
 import lombok.*;
 import lombok.experimental.Accessors;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.UpdateTimestamp;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
@@ -10,6 +11,7 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import javax.persistence.*;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
 import javax.validation.constraints.Size;
 import java.time.LocalDateTime;
 import java.util.Date;
@@ -26,8 +28,13 @@ import java.util.List;
 @AllArgsConstructor
 @ToString
 public class Session {
+    /**
+     * Allocated from a sequence (a table on MySQL) in blocks of 50: IDENTITY would disable JDBC insert batching.
+     * With the pooled-lo optimizer the sequence holds the first id of the next block, as its migration seeds it.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "session_seq")
+    @SequenceGenerator(name = "session_seq", sequenceName = "session_seq", allocationSize = 50)
     private Long id;
 
     @NotBlank
@@ -41,15 +48,27 @@ public class Session {
     @Size(max = 2500)
     private String description;
 
+    @Positive
+    private Integer capacity;
+
+    /**
+     * Participant counter maintained by {@code SessionRepository} seat reservation queries only.
+     */
+    @ColumnDefault("0")
+    @Column(name = "seats_taken", insertable = false, updatable = false)
+    private int seatsTaken;
+
     @OneToOne
     @JoinColumn(name = "teacher_id", referencedColumnName = "id")
     private Teacher teacher;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    @ManyToMany(fetch = FetchType.LAZY)
     @JoinTable(
             name = "PARTICIPATE",
             joinColumns = @JoinColumn( name = "session_id" ),
-            inverseJoinColumns = @JoinColumn( name = "user_id" ) )
+            inverseJoinColumns = @JoinColumn( name = "user_id" ),
+            uniqueConstraints = @UniqueConstraint(columnNames = {"session_id", "user_id"}) )
+    @ToString.Exclude
     private List<User> users;
 
     @CreatedDate
@@ -1,5 +1,6 @@
 package com.openclassrooms.starterjwt.models;
 
+import com.openclassrooms.starterjwt.services.TeacherChangeListener;
 import lombok.*;
 import lombok.experimental.Accessors;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -13,7 +14,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "TEACHERS")
-@EntityListeners(AuditingEntityListener.class)
+@EntityListeners({AuditingEntityListener.class, TeacherChangeListener.class})
 @Data
 @Accessors(chain = true)
 @EqualsAndHashCode(of = {"id"})
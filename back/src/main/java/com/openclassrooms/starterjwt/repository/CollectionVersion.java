@@ -0,0 +1,12 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Row count and latest update of a table, enough to tell whether a listing changed without loading it.
+ */
+public interface CollectionVersion {
+    long getCount();
+
+    LocalDateTime getLastModified();
+}
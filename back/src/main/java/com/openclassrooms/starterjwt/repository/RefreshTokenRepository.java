@@ -0,0 +1,32 @@
+package com.openclassrooms.starterjwt.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+
+@Repository
+public interface RefreshTokenRepository extends JpaRepository<RefreshToken, String> {
+
+    /**
+     * Deletes the token if it has not expired. Of two concurrent renewals with the same token,
+     * only the one whose delete removed the row gets 1.
+     *
+     * @return 1 if the token was deleted, 0 if it is unknown, expired or was already used
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.tokenHash = :tokenHash and t.expiresAt > :now")
+    int deleteUnexpired(@Param("tokenHash") String tokenHash, @Param("now") LocalDateTime now);
+
+    @Transactional
+    @Modifying
+    @Query("delete from RefreshToken t where t.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -1,9 +1,152 @@
 package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.annotations.QueryHints.FETCH_SIZE;
+import static org.hibernate.annotations.QueryHints.READ_ONLY;
 
 @Repository
-public interface SessionRepository  extends JpaRepository<Session, Long> {
+public interface SessionRepository  extends JpaRepository<Session, Long>, JpaSpecificationExecutor<Session> {
+
+    @Override
+    @EntityGraph(attributePaths = "teacher")
+    List<Session> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "teacher")
+    Optional<Session> findById(Long id);
+
+    @Override
+    @EntityGraph(attributePaths = "teacher")
+    List<Session> findAllById(Iterable<Long> ids);
+
+    @Override
+    @EntityGraph(attributePaths = "teacher")
+    List<Session> findAll(Specification<Session> spec, Sort sort);
+
+    @EntityGraph(attributePaths = "teacher")
+    List<Session> findAllByOrderByDateAscIdAsc(Pageable pageable);
+
+    @EntityGraph(attributePaths = "teacher")
+    @Query("select s from Session s where s.date > :date or (s.date = :date and s.id > :id) order by s.date asc, s.id asc")
+    List<Session> findAllAfter(@Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Upcoming sessions of a user, soonest first; the user's PARTICIPATE rows are found through idx_participate_user.
+     */
+    @EntityGraph(attributePaths = "teacher")
+    @Query("select s from Session s join s.users u where u.id = :userId and s.date >= :now order by s.date asc, s.id asc")
+    List<Session> findUpcomingByUser(@Param("userId") Long userId, @Param("now") Date now, Pageable pageable);
+
+    @EntityGraph(attributePaths = "teacher")
+    @Query("select s from Session s join s.users u where u.id = :userId and s.date >= :now"
+            + " and (s.date > :date or (s.date = :date and s.id > :id)) order by s.date asc, s.id asc")
+    List<Session> findUpcomingByUserAfter(@Param("userId") Long userId, @Param("now") Date now,
+                                          @Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Past sessions of a user, latest first.
+     */
+    @EntityGraph(attributePaths = "teacher")
+    @Query("select s from Session s join s.users u where u.id = :userId and s.date < :now order by s.date desc, s.id desc")
+    List<Session> findPastByUser(@Param("userId") Long userId, @Param("now") Date now, Pageable pageable);
+
+    @EntityGraph(attributePaths = "teacher")
+    @Query("select s from Session s join s.users u where u.id = :userId and s.date < :now"
+            + " and (s.date < :date or (s.date = :date and s.id < :id)) order by s.date desc, s.id desc")
+    List<Session> findPastByUserBefore(@Param("userId") Long userId, @Param("now") Date now,
+                                       @Param("date") Date date, @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Every session in (date, id) order, read through an open cursor instead of a materialized list.
+     * Must be consumed in a transaction and closed; the driver pulls {@code fetchSize} rows per round trip.
+     */
+    @QueryHints({@QueryHint(name = FETCH_SIZE, value = "500"), @QueryHint(name = READ_ONLY, value = "true")})
+    @Query("select s from Session s left join fetch s.teacher order by s.date asc, s.id asc")
+    Stream<Session> streamAll();
+
+    @Query("select count(s) as count, max(s.updatedAt) as lastModified from Session s")
+    CollectionVersion findCollectionVersion();
+
+    @Query("select s.updatedAt from Session s where s.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
+
+    /**
+     * Participant ids of the given sessions in a single query, without loading the users themselves.
+     */
+    @Query("select s.id as sessionId, u.id as userId from Session s join s.users u where s.id in :sessionIds")
+    List<ParticipantId> findParticipantIds(@Param("sessionIds") Collection<Long> sessionIds);
+
+    @Query("select case when count(u) > 0 then true else false end from Session s join s.users u"
+            + " where s.id = :sessionId and u.id = :userId")
+    boolean isParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Inserts a single PARTICIPATE row; the (session_id, user_id) unique constraint rejects duplicates.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO PARTICIPATE (session_id, user_id) VALUES (:sessionId, :userId)", nativeQuery = true)
+    int addParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM PARTICIPATE WHERE session_id = :sessionId AND user_id = :userId", nativeQuery = true)
+    int removeParticipant(@Param("sessionId") Long sessionId, @Param("userId") Long userId);
+
+    /**
+     * Atomically takes a seat if the session still has room. The update row-locks the session,
+     * so concurrent reservations for the same session are serialized by the database.
+     * It also sets updated_at, which versions the participant list for conditional reads.
+     *
+     * @return 1 if a seat was taken, 0 if the session is full or does not exist
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET seats_taken = seats_taken + 1, updated_at = :updatedAt WHERE id = :id AND (capacity IS NULL OR seats_taken < capacity)", nativeQuery = true)
+    int reserveSeat(@Param("id") Long id, @Param("updatedAt") LocalDateTime updatedAt);
+
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET seats_taken = seats_taken - 1, updated_at = :updatedAt WHERE id = :id AND seats_taken > 0", nativeQuery = true)
+    int releaseSeat(@Param("id") Long id, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * Recomputes the seat counter after the participants were replaced through the entity, unless they
+     * exceed the capacity of the session. It also sets updated_at: Hibernate does not version the row when
+     * only the participants collection changed.
+     *
+     * @return 0 if the session has more participants than its capacity, and nothing was updated
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE SESSIONS SET seats_taken = (SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = :id), updated_at = :updatedAt"
+            + " WHERE id = :id AND (capacity IS NULL OR capacity >= (SELECT COUNT(*) FROM PARTICIPATE WHERE session_id = :id))", nativeQuery = true)
+    int recountSeats(@Param("id") Long id, @Param("updatedAt") LocalDateTime updatedAt);
+
+    interface ParticipantId {
+        Long getSessionId();
+
+        Long getUserId();
+    }
 }
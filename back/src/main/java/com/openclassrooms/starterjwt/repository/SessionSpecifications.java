@@ -0,0 +1,37 @@
+package com.openclassrooms.starterjwt.repository;
+
+import com.openclassrooms.starterjwt.models.Session;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.Date;
+
+/**
+ * Filters of the session search. Each one is a plain comparison on an indexed column
+ * (idx_sessions_date, idx_sessions_teacher_date) so that the database seeks the matching range.
+ */
+public final class SessionSpecifications {
+
+    private SessionSpecifications() {
+    }
+
+    /**
+     * Sessions on or after {@code from}, all of them when it is {@code null}.
+     */
+    public static Specification<Session> dateFrom(Date from) {
+        return (root, query, builder) -> from == null ? null : builder.greaterThanOrEqualTo(root.get("date"), from);
+    }
+
+    /**
+     * Sessions strictly before {@code to}, all of them when it is {@code null}.
+     */
+    public static Specification<Session> dateBefore(Date to) {
+        return (root, query, builder) -> to == null ? null : builder.lessThan(root.get("date"), to);
+    }
+
+    /**
+     * Sessions of the teacher, all of them when {@code teacherId} is {@code null}.
+     */
+    public static Specification<Session> taughtBy(Long teacherId) {
+        return (root, query, builder) -> teacherId == null ? null : builder.equal(root.get("teacher").get("id"), teacherId);
+    }
+}
@@ -2,8 +2,16 @@ package com.openclassrooms.starterjwt.repository;
 
 import com.openclassrooms.starterjwt.models.Teacher;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Optional;
+
 @Repository
 public interface TeacherRepository  extends JpaRepository<Teacher, Long> {
+
+    @Query("select t.updatedAt from Teacher t where t.id = :id")
+    Optional<LocalDateTime> findUpdatedAtById(@Param("id") Long id);
 }
@@ -3,6 +3,8 @@ package com.openclassrooms.starterjwt.repository;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import com.openclassrooms.starterjwt.models.User;
@@ -15,4 +17,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Boolean existsByEmail(String email);
 
     void deleteByEmail(String email);
+
+    /**
+     * Version of the access tokens of the user, incremented outside of the application to revoke them.
+     */
+    @Query(value = "SELECT token_version FROM USERS WHERE id = :id", nativeQuery = true)
+    Optional<Integer> findTokenVersionById(@Param("id") Long id);
 }
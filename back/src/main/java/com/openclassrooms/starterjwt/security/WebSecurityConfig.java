@@ -1,6 +1,8 @@
 package com.openclassrooms.starterjwt.security;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -16,6 +18,7 @@ import org.springframework.security.web.authentication.UsernamePasswordAuthentic
 
 import com.openclassrooms.starterjwt.security.jwt.AuthEntryPointJwt;
 import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.security.services.BoundedPasswordEncoder;
 import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
 
 @Configuration
@@ -25,20 +28,36 @@ import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
     // jsr250Enabled = true,
     prePostEnabled = true)
 public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
+  // Permitted to everyone, and skipped by the token filter.
+  private static final String[] PUBLIC_PATHS = {"/api/auth/**", "/h2/**"};
+
   @Autowired
   UserDetailsServiceImpl userDetailsService;
 
   @Autowired
   private AuthEntryPointJwt unauthorizedHandler;
 
+  @Autowired
+  private PasswordEncoder passwordEncoder;
+
   @Bean
   public AuthTokenFilter authenticationJwtTokenFilter() {
-    return new AuthTokenFilter();
+    AuthTokenFilter authTokenFilter = new AuthTokenFilter();
+    authTokenFilter.setPublicPaths(PUBLIC_PATHS);
+    return authTokenFilter;
+  }
+
+  // The filter only runs inside the security chain, not a second time as a servlet filter.
+  @Bean
+  public FilterRegistrationBean<AuthTokenFilter> authenticationJwtTokenFilterRegistration(AuthTokenFilter authTokenFilter) {
+    FilterRegistrationBean<AuthTokenFilter> registration = new FilterRegistrationBean<>(authTokenFilter);
+    registration.setEnabled(false);
+    return registration;
   }
 
   @Override
   public void configure(AuthenticationManagerBuilder authenticationManagerBuilder) throws Exception {
-    authenticationManagerBuilder.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder());
+    authenticationManagerBuilder.userDetailsService(userDetailsService).passwordEncoder(passwordEncoder);
   }
 
   @Bean
@@ -47,9 +66,21 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     return super.authenticationManagerBean();
   }
 
+  // Static: the encoder is also a MeterBinder, created with the meter registry before this configuration.
+  // Each hashing running or queued holds a request executor thread while it waits: admitting at most half
+  // of them leaves the other endpoints served while logins are shed with 503.
   @Bean
-  public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder();
+  public static BoundedPasswordEncoder passwordEncoder(
+      @Value("${oc.app.bcryptStrength:10}") int bcryptStrength,
+      @Value("${oc.app.passwordHashingPoolSize:4}") int poolSize,
+      @Value("${oc.app.passwordHashingQueueCapacity:8}") int queueCapacity,
+      @Value("${oc.app.passwordHashingRetryAfterSeconds:1}") long retryAfterSeconds,
+      @Value("${oc.app.requestPoolSize:32}") int requestPoolSize) {
+    if (poolSize + queueCapacity > requestPoolSize / 2) {
+      throw new IllegalArgumentException("oc.app.passwordHashingPoolSize + oc.app.passwordHashingQueueCapacity ("
+          + (poolSize + queueCapacity) + ") must not exceed half of oc.app.requestPoolSize (" + requestPoolSize + ")");
+    }
+    return new BoundedPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength), poolSize, queueCapacity, retryAfterSeconds);
   }
 
   @Override
@@ -57,12 +88,10 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
     http.cors().and().csrf().disable()
       .exceptionHandling().authenticationEntryPoint(unauthorizedHandler).and()
       .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS).and()
-      .authorizeRequests().antMatchers("/api/auth/**").permitAll()
-      .antMatchers("/h2/**").permitAll() //Authoriser H2 pour les tests
+      .authorizeRequests().antMatchers(PUBLIC_PATHS).permitAll()
       .antMatchers("/api/**").authenticated()
       .anyRequest().authenticated();
-    // Désactiver la protection CSRF pour la console H2
-    http.csrf().ignoringAntMatchers("/h2/**");
+    // CSRF reste désactivé : l'API est sans état (jeton Bearer, pas de cookie) et la console H2 n'en a pas besoin
     http.headers().frameOptions().disable();
 
     http.addFilterBefore(authenticationJwtTokenFilter(), UsernamePasswordAuthenticationFilter.class);
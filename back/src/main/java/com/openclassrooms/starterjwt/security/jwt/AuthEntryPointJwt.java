@@ -16,16 +16,26 @@ import org.springframework.security.web.AuthenticationEntryPoint;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 
 @Component
 public class AuthEntryPointJwt implements AuthenticationEntryPoint {
 
   private static final Logger logger = LoggerFactory.getLogger(AuthEntryPointJwt.class);
 
+  private final RateLimitedLogger unauthorizedLogger = new RateLimitedLogger(logger);
+
+  // Shared by all requests: the writer is immutable and keeps its serializers cached between 401s.
+  private final ObjectWriter bodyWriter;
+
+  public AuthEntryPointJwt(ObjectMapper objectMapper) {
+    this.bodyWriter = objectMapper.writerFor(Map.class);
+  }
+
   @Override
   public void commence(HttpServletRequest request, HttpServletResponse response, AuthenticationException authException)
       throws IOException, ServletException {
-    logger.error("Unauthorized error: {}", authException.getMessage());
+    unauthorizedLogger.warn("Unauthorized request: path={} reason={}", request.getServletPath(), authException.getMessage());
 
     response.setContentType(MediaType.APPLICATION_JSON_VALUE);
     response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
@@ -36,8 +46,7 @@ public class AuthEntryPointJwt implements AuthenticationEntryPoint {
     body.put("message", authException.getMessage());
     body.put("path", request.getServletPath());
 
-    final ObjectMapper mapper = new ObjectMapper();
-    mapper.writeValue(response.getOutputStream(), body);
+    bodyWriter.writeValue(response.getOutputStream(), body);
   }
 
 }
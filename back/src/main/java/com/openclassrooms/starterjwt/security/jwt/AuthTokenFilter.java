@@ -1,6 +1,8 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
@@ -10,33 +12,74 @@ import javax.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.util.StringUtils;
 import org.springframework.web.filter.OncePerRequestFilter;
 
-import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+
+import io.jsonwebtoken.Claims;
 
 public class AuthTokenFilter extends OncePerRequestFilter {
   @Autowired
   private JwtUtils jwtUtils;
 
   @Autowired
-  private UserDetailsServiceImpl userDetailsService;
+  private UserDetailsCache userDetailsCache;
+
+  @Autowired
+  private TokenRevocationRegistry tokenRevocationRegistry;
+
+  // When enabled, the principal is rebuilt from the token claims instead of being loaded from the database.
+  @Value("${oc.app.jwtStateless:false}")
+  private boolean stateless;
 
   private static final Logger logger = LoggerFactory.getLogger(AuthTokenFilter.class);
 
+  private final RateLimitedLogger revocationLogger = new RateLimitedLogger(logger);
+
+  private final RateLimitedLogger failureLogger = new RateLimitedLogger(logger);
+
+  // CORS preflights never carry a token; the public paths are added by setPublicPaths().
+  private static final RequestMatcher PREFLIGHT_REQUESTS = new AntPathRequestMatcher("/**", HttpMethod.OPTIONS.name());
+
+  private RequestMatcher skippedRequests = PREFLIGHT_REQUESTS;
+
+  /**
+   * Paths permitted to everyone: their requests skip the token parsing and the principal lookup,
+   * the Authorization header they may carry being ignored.
+   */
+  public void setPublicPaths(String... publicPaths) {
+    List<RequestMatcher> matchers = new ArrayList<>();
+    matchers.add(PREFLIGHT_REQUESTS);
+    for (String publicPath : publicPaths) {
+      matchers.add(new AntPathRequestMatcher(publicPath));
+    }
+    this.skippedRequests = new OrRequestMatcher(matchers);
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return skippedRequests.matches(request);
+  }
+
   @Override
   public void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
       throws ServletException, IOException {
     try {
       String jwt = parseJwt(request);
-      if (jwt != null && jwtUtils.validateJwtToken(jwt)) {
-        String username = jwtUtils.getUserNameFromJwtToken(jwt);
-
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+      Claims claims = jwt != null ? jwtUtils.getValidatedClaims(jwt) : null;
+      UserDetails userDetails = claims != null ? loadUserDetails(claims) : null;
+      if (userDetails != null) {
         UsernamePasswordAuthenticationToken authentication =
             new UsernamePasswordAuthenticationToken(
                 userDetails,
@@ -47,12 +90,24 @@ public class AuthTokenFilter extends OncePerRequestFilter {
         SecurityContextHolder.getContext().setAuthentication(authentication);
       }
     } catch (Exception e) {
-      logger.error("Cannot set user authentication: {}", e);
+      failureLogger.error("Cannot set user authentication", e);
     }
 
     filterChain.doFilter(request, response);
   }
 
+  private UserDetails loadUserDetails(Claims claims) {
+    UserDetailsImpl userDetails = jwtUtils.getUserDetailsFromClaims(claims);
+    if (userDetails != null
+        && !tokenRevocationRegistry.isValid(userDetails.getId(), jwtUtils.getTokenVersion(claims))) {
+      revocationLogger.warn("JWT token rejected: outcome={} user={}", "revoked", userDetails.getId());
+      return null;
+    }
+
+    // Tokens issued before the identity claims were added are still resolved by email.
+    return stateless && userDetails != null ? userDetails : userDetailsCache.get(claims.getSubject());
+  }
+
   public String parseJwt(HttpServletRequest request) {
     String headerAuth = request.getHeader("Authorization");
 
@@ -1,6 +1,13 @@
 package com.openclassrooms.starterjwt.security.jwt;
 
+import java.security.Key;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.crypto.spec.SecretKeySpec;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,49 +18,153 @@ import org.springframework.stereotype.Component;
 import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
 
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.TextCodec;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 
 @Component
-public class JwtUtils {
+public class JwtUtils implements MeterBinder {
   private static final Logger logger = LoggerFactory.getLogger(JwtUtils.class);
 
-  @Value("${oc.app.jwtSecret}")
-  private String jwtSecret;
+  // A rejected token is counted every time but logged at most once per interval: an expiry storm
+  // (every client at once after jwtExpirationMs) would otherwise log one line per request.
+  private final RateLimitedLogger rejectionLogger = new RateLimitedLogger(logger);
+
+  private static final SignatureAlgorithm SIGNATURE_ALGORITHM = SignatureAlgorithm.HS512;
+
+  static final String CLAIM_ID = "id";
+  static final String CLAIM_FIRST_NAME = "firstName";
+  static final String CLAIM_LAST_NAME = "lastName";
+  static final String CLAIM_ADMIN = "admin";
+  static final String CLAIM_VERSION = "ver";
+
+  private final int jwtExpirationMs;
+
+  // Derived once from the base64 secret: the parser is not reconfigured after construction,
+  // so it is shared by all request threads.
+  private final Key signingKey;
 
-  @Value("${oc.app.jwtExpirationMs}")
-  private int jwtExpirationMs;
+  private final JwtParser jwtParser;
+
+  // Counted on every authenticated request: adders keep the increments uncontended across request threads.
+  private final Map<ValidationOutcome, LongAdder> validations = new EnumMap<>(ValidationOutcome.class);
+
+  public JwtUtils(@Value("${oc.app.jwtSecret}") String jwtSecret,
+      @Value("${oc.app.jwtExpirationMs}") int jwtExpirationMs) {
+    this.jwtExpirationMs = jwtExpirationMs;
+    this.signingKey = new SecretKeySpec(TextCodec.BASE64.decode(jwtSecret), SIGNATURE_ALGORITHM.getJcaName());
+    this.jwtParser = Jwts.parser().setSigningKey(signingKey);
+    for (ValidationOutcome outcome : ValidationOutcome.values()) {
+      this.validations.put(outcome, new LongAdder());
+    }
+  }
 
   public String generateJwtToken(Authentication authentication) {
+    return generateJwtToken(authentication, 0);
+  }
 
-    UserDetailsImpl userPrincipal = (UserDetailsImpl) authentication.getPrincipal();
+  /**
+   * Issues a token carrying the identity of the principal (id, names, admin flag) and the given
+   * token version, so that it can be authenticated without loading the user.
+   */
+  public String generateJwtToken(Authentication authentication, int tokenVersion) {
+    return generateJwtToken((UserDetailsImpl) authentication.getPrincipal(), tokenVersion);
+  }
 
+  public String generateJwtToken(UserDetailsImpl userPrincipal, int tokenVersion) {
     return Jwts.builder()
         .setSubject((userPrincipal.getUsername()))
+        .claim(CLAIM_ID, userPrincipal.getId())
+        .claim(CLAIM_FIRST_NAME, userPrincipal.getFirstName())
+        .claim(CLAIM_LAST_NAME, userPrincipal.getLastName())
+        .claim(CLAIM_ADMIN, userPrincipal.getAdmin())
+        .claim(CLAIM_VERSION, tokenVersion)
         .setIssuedAt(new Date())
         .setExpiration(new Date((new Date()).getTime() + jwtExpirationMs))
-        .signWith(SignatureAlgorithm.HS512, jwtSecret)
+        .signWith(SIGNATURE_ALGORITHM, signingKey)
         .compact();
   }
 
-  public String getUserNameFromJwtToken(String token) {
-    return Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(token).getBody().getSubject();
-  }
-
-  public boolean validateJwtToken(String authToken) {
+  /**
+   * Verifies the signature and expiry of the token in a single parse.
+   *
+   * @return the claims of the token (subject, expiration and custom claims), or {@code null} if it is not valid
+   */
+  public Claims getValidatedClaims(String authToken) {
     try {
-      Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
-      return true;
+      Claims claims = jwtParser.parseClaimsJws(authToken).getBody();
+      record(ValidationOutcome.VALID);
+      return claims;
     } catch (SignatureException e) {
-      logger.error("Invalid JWT signature: {}", e.getMessage());
+      reject(ValidationOutcome.INVALID_SIGNATURE, e);
     } catch (MalformedJwtException e) {
-      logger.error("Invalid JWT token: {}", e.getMessage());
+      reject(ValidationOutcome.MALFORMED, e);
     } catch (ExpiredJwtException e) {
-      logger.error("JWT token is expired: {}", e.getMessage());
+      reject(ValidationOutcome.EXPIRED, e);
     } catch (UnsupportedJwtException e) {
-      logger.error("JWT token is unsupported: {}", e.getMessage());
+      reject(ValidationOutcome.UNSUPPORTED, e);
     } catch (IllegalArgumentException e) {
-      logger.error("JWT claims string is empty: {}", e.getMessage());
+      reject(ValidationOutcome.EMPTY, e);
+    }
+
+    return null;
+  }
+
+  /**
+   * Rebuilds the principal from the claims of a validated token.
+   *
+   * @return the principal, or {@code null} if the token was issued without the identity claims
+   */
+  public UserDetailsImpl getUserDetailsFromClaims(Claims claims) {
+    Number id = claims.get(CLAIM_ID, Number.class);
+    if (id == null || claims.get(CLAIM_VERSION) == null) {
+      return null;
     }
 
-    return false;
+    return UserDetailsImpl
+        .builder()
+        .id(id.longValue())
+        .username(claims.getSubject())
+        .firstName(claims.get(CLAIM_FIRST_NAME, String.class))
+        .lastName(claims.get(CLAIM_LAST_NAME, String.class))
+        .admin(claims.get(CLAIM_ADMIN, Boolean.class))
+        .build();
+  }
+
+  public int getTokenVersion(Claims claims) {
+    return claims.get(CLAIM_VERSION, Number.class).intValue();
+  }
+
+  public String getUserNameFromJwtToken(String token) {
+    return jwtParser.parseClaimsJws(token).getBody().getSubject();
+  }
+
+  public boolean validateJwtToken(String authToken) {
+    return getValidatedClaims(authToken) != null;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    validations.forEach((outcome, count) ->
+        FunctionCounter.builder("jwt.validation", count, LongAdder::doubleValue)
+            .tag("outcome", outcome.tag)
+            .description("Tokens checked for signature and expiry, by outcome")
+            .register(registry));
+  }
+
+  private void record(ValidationOutcome outcome) {
+    validations.get(outcome).increment();
+  }
+
+  private void reject(ValidationOutcome outcome, RuntimeException e) {
+    record(outcome);
+    rejectionLogger.warn("JWT token rejected: outcome={} reason={}", outcome.tag, e.getMessage());
+  }
+
+  private enum ValidationOutcome {
+    VALID, EXPIRED, INVALID_SIGNATURE, MALFORMED, UNSUPPORTED, EMPTY;
+
+    private final String tag = name().toLowerCase(Locale.ROOT);
   }
 }
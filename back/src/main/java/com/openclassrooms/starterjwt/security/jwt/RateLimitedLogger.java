@@ -0,0 +1,61 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+
+/**
+ * Logs at most one line per interval; the lines in between are only counted and their number is
+ * reported by the next line logged. Used for the messages any client can trigger on every request
+ * (rejected tokens), so that a storm of them does not make logging the bottleneck: the exact
+ * figures are published by the metrics.
+ */
+final class RateLimitedLogger {
+  static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(10);
+
+  private final Logger logger;
+
+  private final long intervalNanos;
+
+  private final LongSupplier nanoClock;
+
+  private final AtomicLong nextLogAt;
+
+  private final LongAdder suppressed = new LongAdder();
+
+  RateLimitedLogger(Logger logger) {
+    this(logger, DEFAULT_INTERVAL, System::nanoTime);
+  }
+
+  RateLimitedLogger(Logger logger, Duration interval, LongSupplier nanoClock) {
+    this.logger = logger;
+    this.intervalNanos = interval.toNanos();
+    this.nanoClock = nanoClock;
+    this.nextLogAt = new AtomicLong(nanoClock.getAsLong());
+  }
+
+  void warn(String format, Object arg1, Object arg2) {
+    if (logger.isWarnEnabled() && acquire()) {
+      logger.warn(format + " suppressed={}", arg1, arg2, suppressed.sumThenReset());
+    }
+  }
+
+  void error(String message, Throwable throwable) {
+    if (logger.isErrorEnabled() && acquire()) {
+      logger.error(message + " suppressed={}", suppressed.sumThenReset(), throwable);
+    }
+  }
+
+  private boolean acquire() {
+    long now = nanoClock.getAsLong();
+    long next = nextLogAt.get();
+    if (now - next >= 0 && nextLogAt.compareAndSet(next, now + intervalNanos)) {
+      return true;
+    }
+    suppressed.increment();
+    return false;
+  }
+}
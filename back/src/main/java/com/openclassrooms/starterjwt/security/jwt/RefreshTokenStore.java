@@ -0,0 +1,82 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+
+/**
+ * Refresh tokens issued next to the short-lived access tokens, so that renewing an access token costs
+ * a primary key lookup instead of a password check. Only the SHA-256 of each token is stored, and a
+ * token can be used once: {@link #consume(String)} deletes it and the caller issues the next one.
+ */
+@Component
+public class RefreshTokenStore {
+  private static final int TOKEN_BYTES = 32;
+
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+  private final RefreshTokenRepository refreshTokenRepository;
+
+  private final long refreshTokenExpirationMs;
+
+  private final SecureRandom secureRandom = new SecureRandom();
+
+  public RefreshTokenStore(RefreshTokenRepository refreshTokenRepository,
+      @Value("${oc.app.refreshTokenExpirationMs:604800000}") long refreshTokenExpirationMs) {
+    this.refreshTokenRepository = refreshTokenRepository;
+    this.refreshTokenExpirationMs = refreshTokenExpirationMs;
+  }
+
+  public String issue(Long userId) {
+    byte[] bytes = new byte[TOKEN_BYTES];
+    secureRandom.nextBytes(bytes);
+    String token = ENCODER.encodeToString(bytes);
+
+    refreshTokenRepository.save(RefreshToken.builder()
+        .tokenHash(hash(token))
+        .userId(userId)
+        .expiresAt(LocalDateTime.now().plus(refreshTokenExpirationMs, ChronoUnit.MILLIS))
+        .build());
+    return token;
+  }
+
+  /**
+   * Deletes the token, which can then no longer be used.
+   *
+   * @return the id of the user the token was issued to, or {@code null} if it is unknown, expired or already used
+   */
+  public Long consume(String token) {
+    String tokenHash = hash(token);
+    Optional<RefreshToken> refreshToken = refreshTokenRepository.findById(tokenHash);
+    if (refreshToken.isEmpty() || refreshTokenRepository.deleteUnexpired(tokenHash, LocalDateTime.now()) == 0) {
+      return null;
+    }
+    return refreshToken.get().getUserId();
+  }
+
+  @Scheduled(initialDelayString = "${oc.app.refreshTokenPurgeMs:3600000}",
+      fixedDelayString = "${oc.app.refreshTokenPurgeMs:3600000}")
+  public void purgeExpired() {
+    refreshTokenRepository.deleteExpired(LocalDateTime.now());
+  }
+
+  static String hash(String token) {
+    try {
+      return ENCODER.encodeToString(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
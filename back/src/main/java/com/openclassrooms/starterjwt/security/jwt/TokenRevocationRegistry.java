@@ -0,0 +1,91 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Rejects the tokens of deleted users and the tokens issued before their user's token_version was
+ * incremented, which stateless authentication would otherwise accept until they expire. The "ver" claim
+ * of the tokens carries {@link #currentVersion(Long)}, read from USERS.token_version, and every request
+ * compares it with the current one.
+ * Versions are cached per user for {@code oc.app.tokenVersionTtlMs}: the instance that deletes a user
+ * rejects its tokens at once, the other instances once their cached version expires.
+ */
+@Component
+public class TokenRevocationRegistry implements MeterBinder {
+  static final int REVOKED = -1;
+
+  private final UserRepository userRepository;
+
+  private final Cache<Long, Integer> versions;
+
+  private final LongAdder rejected = new LongAdder();
+
+  @Autowired
+  public TokenRevocationRegistry(UserRepository userRepository,
+      @Value("${oc.app.tokenVersionMaxSize:100000}") long maximumSize,
+      @Value("${oc.app.tokenVersionTtlMs:30000}") long timeToLiveMs) {
+    this(userRepository, maximumSize, timeToLiveMs, Ticker.systemTicker());
+  }
+
+  TokenRevocationRegistry(UserRepository userRepository, long maximumSize, long timeToLiveMs, Ticker ticker) {
+    this.userRepository = userRepository;
+    this.versions = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(Duration.ofMillis(timeToLiveMs))
+        .ticker(ticker)
+        .build();
+  }
+
+  public int currentVersion(Long userId) {
+    return versions.get(userId, id -> userRepository.findTokenVersionById(id).orElse(REVOKED));
+  }
+
+  /**
+   * Version for a token being issued, read again from the database so that it is not an outdated one.
+   */
+  public int issuedVersion(Long userId) {
+    versions.invalidate(userId);
+    return currentVersion(userId);
+  }
+
+  public boolean isValid(Long userId, int version) {
+    int current = currentVersion(userId);
+    if (current != REVOKED && current == version) {
+      return true;
+    }
+    rejected.increment();
+    return false;
+  }
+
+  public boolean isRevoked(Long userId) {
+    return currentVersion(userId) == REVOKED;
+  }
+
+  /**
+   * Rejects the tokens of a user that was just deleted, without waiting for its cached version to expire.
+   */
+  public void revoke(Long userId) {
+    versions.put(userId, REVOKED);
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("jwt.revoked", rejected, LongAdder::doubleValue)
+        .description("Valid tokens rejected because their user was deleted or their version is outdated")
+        .register(registry);
+  }
+}
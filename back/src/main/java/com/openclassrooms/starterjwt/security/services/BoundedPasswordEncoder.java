@@ -0,0 +1,96 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the hashing and verification of the delegate encoder on a small dedicated pool, so that a burst
+ * of logins uses at most {@code poolSize} cores and cannot starve the threads serving the other endpoints.
+ * When the pool and its queue are full the caller gets a 503 with Retry-After instead of waiting.
+ * The caller waits for its hashing, so {@code poolSize + queueCapacity} bounds the callers it holds.
+ * Pool usage is published as the {@code executor.*} metrics of the "passwordHashing" executor.
+ */
+public class BoundedPasswordEncoder implements PasswordEncoder, MeterBinder, DisposableBean {
+  private final PasswordEncoder delegate;
+
+  private final ThreadPoolExecutor executor;
+
+  private final long retryAfterSeconds;
+
+  private final AtomicLong rejected = new AtomicLong();
+
+  public BoundedPasswordEncoder(PasswordEncoder delegate, int poolSize, int queueCapacity, long retryAfterSeconds) {
+    this.delegate = delegate;
+    this.executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hashing-"));
+    this.executor.allowCoreThreadTimeOut(true);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  @Override
+  public String encode(CharSequence rawPassword) {
+    return run(() -> this.delegate.encode(rawPassword));
+  }
+
+  @Override
+  public boolean matches(CharSequence rawPassword, String encodedPassword) {
+    return run(() -> this.delegate.matches(rawPassword, encodedPassword));
+  }
+
+  @Override
+  public boolean upgradeEncoding(String encodedPassword) {
+    return this.delegate.upgradeEncoding(encodedPassword);
+  }
+
+  private <T> T run(Callable<T> task) {
+    Future<T> future;
+    try {
+      future = this.executor.submit(task);
+    } catch (RejectedExecutionException e) {
+      this.rejected.incrementAndGet();
+      throw new ServiceUnavailableException(this.retryAfterSeconds);
+    }
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while hashing a password", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    new ExecutorServiceMetrics(this.executor, "passwordHashing", Tags.empty()).bindTo(registry);
+    FunctionCounter.builder("executor.rejected", this.rejected, AtomicLong::doubleValue)
+        .tag("name", "passwordHashing")
+        .description("Password hashings rejected because the hashing pool was saturated")
+        .register(registry);
+  }
+
+  @Override
+  public void destroy() {
+    this.executor.shutdown();
+  }
+}
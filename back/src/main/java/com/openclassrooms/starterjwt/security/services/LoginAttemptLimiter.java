@@ -0,0 +1,157 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.openclassrooms.starterjwt.exception.TooManyRequestsException;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Limits the login attempts per email and per client address over a sliding window, before the
+ * password is verified: an attempt beyond the limit is answered 429 without spending a BCrypt hash.
+ * The windows of the emails and addresses are held in bounded caches and expire once they can no
+ * longer reject anything.
+ */
+@Component
+public class LoginAttemptLimiter implements MeterBinder {
+  private final int maxAttemptsPerEmail;
+
+  private final int maxAttemptsPerAddress;
+
+  private final long windowNanos;
+
+  private final LongSupplier nanoClock;
+
+  // Origin of the window indexes: System.nanoTime() may be negative.
+  private final long origin;
+
+  private final Cache<String, SlidingWindow> emailWindows;
+
+  private final Cache<String, SlidingWindow> addressWindows;
+
+  private final LongAdder rejectedByEmail = new LongAdder();
+
+  private final LongAdder rejectedByAddress = new LongAdder();
+
+  @Autowired
+  public LoginAttemptLimiter(@Value("${oc.app.loginAttemptsPerEmail:5}") int maxAttemptsPerEmail,
+      @Value("${oc.app.loginAttemptsPerAddress:50}") int maxAttemptsPerAddress,
+      @Value("${oc.app.loginAttemptWindowMs:60000}") long windowMs,
+      @Value("${oc.app.loginAttemptMaxKeys:100000}") long maximumKeys) {
+    this(maxAttemptsPerEmail, maxAttemptsPerAddress, windowMs, maximumKeys, System::nanoTime);
+  }
+
+  LoginAttemptLimiter(int maxAttemptsPerEmail, int maxAttemptsPerAddress, long windowMs, long maximumKeys,
+      LongSupplier nanoClock) {
+    if (Math.max(maxAttemptsPerEmail, maxAttemptsPerAddress) > SlidingWindow.MAX_COUNT) {
+      throw new IllegalArgumentException("At most " + SlidingWindow.MAX_COUNT + " attempts per window");
+    }
+    this.maxAttemptsPerEmail = maxAttemptsPerEmail;
+    this.maxAttemptsPerAddress = maxAttemptsPerAddress;
+    this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+    this.nanoClock = nanoClock;
+    this.origin = nanoClock.getAsLong();
+    // After two windows without attempts a counter is back to zero: dropping it loses nothing.
+    this.emailWindows = windows(maximumKeys, Duration.ofMillis(2 * windowMs));
+    this.addressWindows = windows(maximumKeys, Duration.ofMillis(2 * windowMs));
+  }
+
+  private static Cache<String, SlidingWindow> windows(long maximumKeys, Duration idleTime) {
+    return Caffeine.newBuilder()
+        .maximumSize(maximumKeys)
+        .expireAfterAccess(idleTime)
+        .build();
+  }
+
+  /**
+   * Counts a login attempt for the client address, then for the email.
+   *
+   * @throws TooManyRequestsException if either already made its maximum of attempts over the last window
+   */
+  public void acquire(String email, String remoteAddress) {
+    long elapsed = nanoClock.getAsLong() - origin;
+
+    if (!addressWindows.get(remoteAddress, key -> new SlidingWindow()).tryAcquire(elapsed, windowNanos, maxAttemptsPerAddress)) {
+      rejectedByAddress.increment();
+      throw new TooManyRequestsException(retryAfterSeconds());
+    }
+    if (!emailWindows.get(email.toLowerCase(Locale.ROOT), key -> new SlidingWindow()).tryAcquire(elapsed, windowNanos, maxAttemptsPerEmail)) {
+      rejectedByEmail.increment();
+      throw new TooManyRequestsException(retryAfterSeconds());
+    }
+  }
+
+  private long retryAfterSeconds() {
+    return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(windowNanos));
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    FunctionCounter.builder("auth.login.throttled", rejectedByEmail, LongAdder::doubleValue)
+        .tag("key", "email")
+        .description("Login attempts rejected before the password check, by exhausted limit")
+        .register(registry);
+    FunctionCounter.builder("auth.login.throttled", rejectedByAddress, LongAdder::doubleValue)
+        .tag("key", "address")
+        .description("Login attempts rejected before the password check, by exhausted limit")
+        .register(registry);
+    Gauge.builder("auth.login.windows", emailWindows, Cache::estimatedSize)
+        .tag("key", "email")
+        .description("Emails and addresses with a login attempt window in memory")
+        .register(registry);
+    Gauge.builder("auth.login.windows", addressWindows, Cache::estimatedSize)
+        .tag("key", "address")
+        .description("Emails and addresses with a login attempt window in memory")
+        .register(registry);
+  }
+
+  /**
+   * Sliding window approximated from two fixed windows: the count of the previous window, weighted by
+   * the part of it the sliding window still covers, plus the count of the current one. The window index
+   * and both counts are packed in a single long updated by compare-and-set, so counting takes no lock.
+   */
+  static final class SlidingWindow {
+    static final int MAX_COUNT = 0xFFFF;
+
+    private static final long INDEX_MASK = 0xFFFFFFFFL;
+
+    private final AtomicLong state = new AtomicLong();
+
+    boolean tryAcquire(long elapsedNanos, long windowNanos, int limit) {
+      long index = (elapsedNanos / windowNanos) & INDEX_MASK;
+      double previousWeight = 1 - (double) (elapsedNanos % windowNanos) / windowNanos;
+
+      while (true) {
+        long current = state.get();
+        long currentIndex = current >>> 32;
+        long previousCount = (current >>> 16) & MAX_COUNT;
+        long currentCount = current & MAX_COUNT;
+        if (index != currentIndex) {
+          previousCount = ((index - currentIndex) & INDEX_MASK) == 1 ? currentCount : 0;
+          currentCount = 0;
+        }
+
+        if (previousCount * previousWeight + currentCount >= limit) {
+          return false;
+        }
+        if (state.compareAndSet(current, index << 32 | previousCount << 16 | (currentCount + 1))) {
+          return true;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Bounded, time-evicted cache of the principals resolved by {@link UserDetailsServiceImpl},
+ * keyed by email, so that authenticating a request with a known token does not query the database.
+ * Hit/miss counters are published as the {@code cache.*} metrics of the "userDetails" cache.
+ */
+@Component
+public class UserDetailsCache implements MeterBinder {
+  private final UserDetailsServiceImpl userDetailsService;
+
+  private final Cache<String, UserDetailsImpl> cache;
+
+  public UserDetailsCache(UserDetailsServiceImpl userDetailsService,
+      @Value("${oc.app.userCacheMaxSize:10000}") long maximumSize,
+      @Value("${oc.app.userCacheTtlMs:300000}") long timeToLiveMs) {
+    this.userDetailsService = userDetailsService;
+    this.cache = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(Duration.ofMillis(timeToLiveMs))
+        .recordStats()
+        .build();
+  }
+
+  public UserDetailsImpl get(String email) throws UsernameNotFoundException {
+    return cache.get(email, key -> (UserDetailsImpl) userDetailsService.loadUserByUsername(key));
+  }
+
+  public void evictById(Long id) {
+    cache.asMap().values().removeIf(userDetails -> id.equals(userDetails.getId()));
+  }
+
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    CaffeineCacheMetrics.monitor(registry, cache, "userDetails");
+  }
+}
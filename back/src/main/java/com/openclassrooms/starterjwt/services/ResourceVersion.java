@@ -0,0 +1,50 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.repository.CollectionVersion;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Validators of a read endpoint: a strong ETag and the Last-Modified date derived from {@code updatedAt}.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ResourceVersion {
+    private final String eTag;
+
+    /**
+     * Epoch milliseconds, or -1 when the resource has no update date.
+     */
+    private final long lastModified;
+
+    public static ResourceVersion of(LocalDateTime updatedAt) {
+        Instant instant = toInstant(updatedAt);
+        return new ResourceVersion("\"" + instant.getEpochSecond() + "." + instant.getNano() + "\"", toEpochMilli(updatedAt));
+    }
+
+    /**
+     * Version of a listing: the count changes on delete, the latest update on create and update.
+     */
+    public static ResourceVersion of(CollectionVersion version) {
+        return of(version.getCount(), version.getLastModified());
+    }
+
+    public static ResourceVersion of(long count, LocalDateTime lastModified) {
+        Instant instant = toInstant(lastModified);
+        return new ResourceVersion("\"" + count + "-" + instant.getEpochSecond() + "." + instant.getNano() + "\"",
+                toEpochMilli(lastModified));
+    }
+
+    private static Instant toInstant(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant() : Instant.EPOCH;
+    }
+
+    private static long toEpochMilli(LocalDateTime dateTime) {
+        return dateTime != null ? toInstant(dateTime).toEpochMilli() : -1;
+    }
+}
@@ -0,0 +1,149 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The JSON body of the session listing, kept in memory as one pre-serialized fragment per session.
+ * {@link SessionService} marks a session dirty once a mutation is committed; only the dirty sessions
+ * are queried and serialized again on the next read, so an unchanged listing is served without any
+ * database access. Writes that bypass SessionService are not seen: disable it with
+ * {@code oc.app.sessionListSnapshot=false} to query the sessions on every call.
+ */
+@Component
+public class SessionListSnapshot {
+    private final SessionRepository sessionRepository;
+
+    private final SessionMapper sessionMapper;
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${oc.app.sessionListSnapshot:false}")
+    private boolean enabled;
+
+    private final Set<Long> dirtyIds = ConcurrentHashMap.newKeySet();
+
+    // Ordered by id like SessionRepository.findAll(), guarded by this
+    private TreeMap<Long, byte[]> fragments;
+
+    private volatile Rendered rendered;
+
+    public SessionListSnapshot(SessionRepository sessionRepository, SessionMapper sessionMapper, ObjectMapper objectMapper) {
+        this.sessionRepository = sessionRepository;
+        this.sessionMapper = sessionMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (enabled) {
+            get();
+        }
+    }
+
+    public Rendered get() {
+        Rendered current = this.rendered;
+        if (current != null && dirtyIds.isEmpty()) {
+            return current;
+        }
+        return render();
+    }
+
+    /**
+     * Re-renders the session on the next read, after the current transaction commits if there is one.
+     */
+    public void markDirty(Long id) {
+        if (!enabled) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirtyIds.add(id);
+                }
+            });
+        } else {
+            dirtyIds.add(id);
+        }
+    }
+
+    private synchronized Rendered render() {
+        if (fragments == null) {
+            // Cleared before querying: a session committed meanwhile is either read now or re-rendered next time
+            dirtyIds.clear();
+            fragments = new TreeMap<>();
+            List<Session> sessions = sessionRepository.findAll();
+            putAll(sessions);
+        } else if (!dirtyIds.isEmpty()) {
+            List<Long> ids = new ArrayList<>(dirtyIds);
+            dirtyIds.removeAll(ids);
+            ids.forEach(fragments::remove);
+            putAll(sessionRepository.findAllById(ids));
+        } else if (rendered != null) {
+            return rendered;
+        }
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        json.write('[');
+        for (byte[] fragment : fragments.values()) {
+            if (json.size() > 1) {
+                json.write(',');
+            }
+            json.writeBytes(fragment);
+        }
+        json.write(']');
+
+        byte[] bytes = json.toByteArray();
+        rendered = new Rendered(bytes, "\"" + DigestUtils.md5DigestAsHex(bytes) + "\"");
+        return rendered;
+    }
+
+    private void putAll(List<Session> sessions) {
+        if (sessions.isEmpty()) {
+            return;
+        }
+
+        Map<Long, List<Long>> participantIds = SessionService.findParticipantIds(sessionRepository, sessions);
+        for (Session session : sessions) {
+            try {
+                fragments.put(session.getId(), objectMapper.writeValueAsBytes(sessionMapper.toDto(session, participantIds)));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Rendered {
+        private final byte[] json;
+
+        private final String eTag;
+    }
+}
@@ -0,0 +1,16 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.models.Session;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+public class SessionPage {
+    private final List<Session> sessions;
+
+    /** Cursor of the next page, {@code null} on the last page. */
+    private final String nextCursor;
+}
@@ -1,78 +1,357 @@
 package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
-import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.SessionSpecifications;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
-public class SessionService {
+public class SessionService implements MeterBinder {
     private final SessionRepository sessionRepository;
 
     private final UserRepository userRepository;
 
-    public SessionService(SessionRepository sessionRepository, UserRepository userRepository) {
+    private final SessionListSnapshot sessionListSnapshot;
+
+    @Value("${oc.app.sessionPageSize:20}")
+    private int defaultPageSize = 20;
+
+    @Value("${oc.app.sessionMaxPageSize:100}")
+    private int maxPageSize = 100;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize = 50;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final Map<Participation, LongAdder> participations = new EnumMap<>(Participation.class);
+
+    public SessionService(SessionRepository sessionRepository, UserRepository userRepository,
+                          SessionListSnapshot sessionListSnapshot) {
         this.sessionRepository = sessionRepository;
         this.userRepository = userRepository;
+        this.sessionListSnapshot = sessionListSnapshot;
+        for (Participation outcome : Participation.values()) {
+            this.participations.put(outcome, new LongAdder());
+        }
     }
 
+    /**
+     * @throws ConflictException if the session has more participants than its capacity
+     */
+    @Transactional
+    @Timed("service.session")
     public Session create(Session session) {
-        return this.sessionRepository.save(session);
+        Session savedSession = this.sessionRepository.saveAndFlush(session);
+        recountSeats(savedSession.getId());
+        this.sessionListSnapshot.markDirty(savedSession.getId());
+        return savedSession;
+    }
+
+    /**
+     * Inserts the sessions in a single transaction, flushing one JDBC batch at a time and clearing the
+     * persistence context in between so that memory stays bounded whatever the number of sessions.
+     * An exception thrown by the iterator (invalid input), or a session with more participants than its
+     * capacity ({@link ConflictException}), rolls the whole import back.
+     *
+     * @return the number of sessions created
+     */
+    @Transactional
+    @Timed("service.session")
+    public int createAll(Iterator<Session> sessions) {
+        List<Session> batch = new ArrayList<>(this.batchSize);
+        int created = 0;
+        while (sessions.hasNext()) {
+            batch.add(sessions.next());
+            if (batch.size() == this.batchSize) {
+                created += saveBatch(batch);
+            }
+        }
+        return created + saveBatch(batch);
+    }
+
+    private int saveBatch(List<Session> batch) {
+        int saved = batch.size();
+        this.sessionRepository.saveAll(batch);
+        this.sessionRepository.flush();
+        for (Session session : batch) {
+            if (session.getUsers() != null && !session.getUsers().isEmpty()) {
+                recountSeats(session.getId());
+            }
+            this.sessionListSnapshot.markDirty(session.getId());
+        }
+        this.entityManager.clear();
+        batch.clear();
+        return saved;
+    }
+
+    /**
+     * Streams every session in (date, id) order from a single read-only query and hands them to the
+     * consumer in batches, with their participant ids. The persistence context is cleared after each
+     * batch, so exports run in constant memory whatever the number of sessions.
+     */
+    @Transactional(readOnly = true)
+    @Timed("service.session")
+    public void exportAll(int batchSize, BiConsumer<List<Session>, Map<Long, List<Long>>> consumer) {
+        try (Stream<Session> stream = this.sessionRepository.streamAll()) {
+            Iterator<Session> sessions = stream.iterator();
+            List<Session> batch = new ArrayList<>(batchSize);
+            while (sessions.hasNext()) {
+                batch.add(sessions.next());
+                if (batch.size() == batchSize || !sessions.hasNext()) {
+                    consumer.accept(batch, findParticipantIds(batch));
+                    this.entityManager.clear();
+                    batch.clear();
+                }
+            }
+        }
     }
 
+    @Timed("service.session")
     public void delete(Long id) {
         this.sessionRepository.deleteById(id);
+        this.sessionListSnapshot.markDirty(id);
     }
 
+    @Timed("service.session")
     public List<Session> findAll() {
         return this.sessionRepository.findAll();
     }
 
+    /**
+     * @return the JSON of {@link #findAll()} rendered from memory, or {@code null} when the snapshot is disabled
+     */
+    @Timed("service.session")
+    public SessionListSnapshot.Rendered findAllRendered() {
+        return this.sessionListSnapshot.isEnabled() ? this.sessionListSnapshot.get() : null;
+    }
+
+    /**
+     * Keyset pagination over sessions ordered by (date, id): the cursor seeks directly to the
+     * next row instead of counting an offset, so every page costs the same whatever the table size.
+     */
+    @Timed("service.session")
+    public SessionPage findPage(String cursor, Integer size) {
+        return page(size, limit -> {
+            if (cursor == null) {
+                return this.sessionRepository.findAllByOrderByDateAscIdAsc(limit);
+            }
+            SessionCursor after = SessionCursor.decode(cursor);
+            return this.sessionRepository.findAllAfter(after.getDate(), after.getId(), limit);
+        });
+    }
+
+    /**
+     * Sessions of the [from, to) date window, optionally of a single teacher, ordered by (date, id).
+     * Unset bounds are open; the window keeps the result proportional to what the calendar shows.
+     */
+    @Timed("service.session")
+    public List<Session> search(Date from, Date to, Long teacherId) {
+        if (from != null && to != null && from.after(to)) {
+            throw new BadRequestException();
+        }
+
+        Specification<Session> filter = Specification.where(SessionSpecifications.dateFrom(from))
+                .and(SessionSpecifications.dateBefore(to))
+                .and(SessionSpecifications.taughtBy(teacherId));
+        return this.sessionRepository.findAll(filter, Sort.by("date", "id"));
+    }
+
+    /**
+     * Sessions a user participates in, paged like {@link #findPage(String, Integer)}: upcoming ones
+     * soonest first, or past ones latest first. A user without participations gets an empty page.
+     */
+    @Timed("service.session")
+    public SessionPage findPageByUser(Long userId, boolean upcoming, String cursor, Integer size) {
+        Date now = new Date();
+        return page(size, limit -> {
+            if (cursor == null) {
+                return upcoming
+                        ? this.sessionRepository.findUpcomingByUser(userId, now, limit)
+                        : this.sessionRepository.findPastByUser(userId, now, limit);
+            }
+            SessionCursor from = SessionCursor.decode(cursor);
+            return upcoming
+                    ? this.sessionRepository.findUpcomingByUserAfter(userId, now, from.getDate(), from.getId(), limit)
+                    : this.sessionRepository.findPastByUserBefore(userId, now, from.getDate(), from.getId(), limit);
+        });
+    }
+
+    private SessionPage page(Integer size, Function<PageRequest, List<Session>> query) {
+        int pageSize = size == null ? this.defaultPageSize : Math.min(size, this.maxPageSize);
+        if (pageSize < 1) {
+            throw new BadRequestException();
+        }
+
+        // One extra row tells whether a next page exists without a count query
+        List<Session> sessions = query.apply(PageRequest.of(0, pageSize + 1));
+
+        if (sessions.size() <= pageSize) {
+            return new SessionPage(sessions, null);
+        }
+        List<Session> page = sessions.subList(0, pageSize);
+        return new SessionPage(page, SessionCursor.of(page.get(pageSize - 1)).encode());
+    }
+
+    /**
+     * Participant ids per session id, fetched in one query for the whole list so that listings
+     * never initialize the lazy {@link Session#getUsers()} collections.
+     */
+    @Timed("service.session")
+    public Map<Long, List<Long>> findParticipantIds(List<Session> sessions) {
+        if (sessions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        return findParticipantIds(this.sessionRepository, sessions);
+    }
+
+    static Map<Long, List<Long>> findParticipantIds(SessionRepository sessionRepository, List<Session> sessions) {
+        List<Long> sessionIds = sessions.stream().map(Session::getId).collect(Collectors.toList());
+        return sessionRepository.findParticipantIds(sessionIds).stream()
+                .collect(Collectors.groupingBy(SessionRepository.ParticipantId::getSessionId,
+                        Collectors.mapping(SessionRepository.ParticipantId::getUserId, Collectors.toList())));
+    }
+
+    @Timed("service.session")
     public Session getById(Long id) {
         return this.sessionRepository.findById(id).orElse(null);
     }
 
+    @Timed("service.session")
+    public ResourceVersion getVersion() {
+        return ResourceVersion.of(this.sessionRepository.findCollectionVersion());
+    }
+
+    /**
+     * @return the version of the session and of its participants, or {@code null} if it does not exist
+     */
+    @Timed("service.session")
+    public ResourceVersion getVersion(Long id) {
+        return this.sessionRepository.findUpdatedAtById(id).map(ResourceVersion::of).orElse(null);
+    }
+
+    /**
+     * Replaces the session and its participants. The seat count is recomputed under the row lock of the
+     * session, so a capacity below the participants, including ones added concurrently, is refused.
+     * The timestamps stay the server's: they version the session for conditional reads.
+     *
+     * @throws ConflictException if the session has more participants than its capacity
+     */
+    @Transactional
+    @Timed("service.session")
     public Session update(Long id, Session session) {
         session.setId(id);
-        return this.sessionRepository.save(session);
+        this.sessionRepository.findById(id).ifPresent(existing -> session
+                .setCreatedAt(existing.getCreatedAt())
+                .setUpdatedAt(existing.getUpdatedAt()));
+        Session savedSession = this.sessionRepository.saveAndFlush(session);
+        recountSeats(savedSession.getId());
+        this.sessionListSnapshot.markDirty(savedSession.getId());
+        return savedSession;
     }
 
+    private void recountSeats(Long id) {
+        if (this.sessionRepository.recountSeats(id, LocalDateTime.now()) == 0) {
+            throw new ConflictException();
+        }
+    }
+
+    /**
+     * Reserves a seat then records the participation in the same transaction: a full session
+     * rejects the request before any insert, and a duplicate participation gives the seat back.
+     * A user already participating in a full session gets the duplicate answer, not the conflict.
+     */
+    @Transactional
+    @Timed("service.session")
     public void participate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        User user = this.userRepository.findById(userId).orElse(null);
-        if (session == null || user == null) {
+        if (!this.sessionRepository.existsById(id) || !this.userRepository.existsById(userId)) {
+            record(Participation.NOT_FOUND);
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(alreadyParticipate) {
-            throw new BadRequestException();
+        if (this.sessionRepository.reserveSeat(id, LocalDateTime.now()) == 0) {
+            if (this.sessionRepository.isParticipant(id, userId)) {
+                record(Participation.DUPLICATE);
+                throw new BadRequestException();
+            }
+            record(Participation.CONFLICT);
+            throw new ConflictException();
         }
 
-        session.getUsers().add(user);
+        try {
+            this.sessionRepository.addParticipant(id, userId);
+        } catch (DataIntegrityViolationException e) {
+            // Already participating: the row exists and hits the unique constraint
+            record(Participation.DUPLICATE);
+            throw new BadRequestException();
+        }
 
-        this.sessionRepository.save(session);
+        this.sessionListSnapshot.markDirty(id);
+        record(Participation.SUCCESS);
     }
 
+    @Transactional
+    @Timed("service.session")
     public void noLongerParticipate(Long id, Long userId) {
-        Session session = this.sessionRepository.findById(id).orElse(null);
-        if (session == null) {
+        if (!this.sessionRepository.existsById(id)) {
             throw new NotFoundException();
         }
 
-        boolean alreadyParticipate = session.getUsers().stream().anyMatch(o -> o.getId().equals(userId));
-        if(!alreadyParticipate) {
+        if (this.sessionRepository.removeParticipant(id, userId) == 0) {
             throw new BadRequestException();
         }
 
-        session.setUsers(session.getUsers().stream().filter(user -> !user.getId().equals(userId)).collect(Collectors.toList()));
+        this.sessionRepository.releaseSeat(id, LocalDateTime.now());
+        this.sessionListSnapshot.markDirty(id);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.participations.forEach((outcome, count) ->
+                FunctionCounter.builder("session.participation", count, LongAdder::doubleValue)
+                        .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                        .description("Participation requests, by outcome")
+                        .register(registry));
+    }
+
+    private void record(Participation outcome) {
+        this.participations.get(outcome).increment();
+    }
 
-        this.sessionRepository.save(session);
+    private enum Participation {
+        SUCCESS, CONFLICT, NOT_FOUND, DUPLICATE
     }
 }
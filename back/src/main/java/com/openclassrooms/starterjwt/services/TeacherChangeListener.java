@@ -0,0 +1,42 @@
+package com.openclassrooms.starterjwt.services;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * Drops the teacher catalog once a write to TEACHERS is committed, so that the next read reloads it.
+ * Instantiated by Hibernate through the Spring bean container: the service is looked up lazily
+ * because the listener is created with the entity manager factory.
+ */
+public class TeacherChangeListener {
+    private final ObjectProvider<TeacherService> teacherService;
+
+    public TeacherChangeListener(ObjectProvider<TeacherService> teacherService) {
+        this.teacherService = teacherService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object teacher) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+            });
+        } else {
+            invalidate();
+        }
+    }
+
+    private void invalidate() {
+        teacherService.ifAvailable(TeacherService::invalidate);
+    }
+}
@@ -2,23 +2,157 @@ package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import io.micrometer.core.annotation.Timed;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.Getter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
+/**
+ * Serves the teachers from an immutable in-memory snapshot of the whole table, which is small and
+ * rarely written. The snapshot is loaded when the application is ready, dropped after each committed
+ * write through JPA (see {@link TeacherChangeListener}) and reloaded on a schedule for the writes made
+ * outside of the application.
+ */
 @Service
-public class TeacherService {
+public class TeacherService implements MeterBinder {
     private final TeacherRepository teacherRepository;
 
+    private Snapshot snapshot;
+
+    // Incremented by invalidate() so that a load started before a write does not publish stale rows.
+    private long generation;
+
     public TeacherService(TeacherRepository teacherRepository) {
         this.teacherRepository = teacherRepository;
     }
 
+    @Timed("service.teacher")
     public List<Teacher> findAll() {
-        return this.teacherRepository.findAll();
+        return snapshot().getTeachers();
     }
 
+    @Timed("service.teacher")
     public Teacher findById(Long id) {
-        return this.teacherRepository.findById(id).orElse(null);
+        Teacher teacher = snapshot().getTeachersById().get(id);
+        if (teacher != null) {
+            return teacher;
+        }
+
+        teacher = this.teacherRepository.findById(id).orElse(null);
+        if (teacher != null) {
+            invalidate();
+        }
+        return teacher;
+    }
+
+    @Timed("service.teacher")
+    public ResourceVersion getVersion() {
+        return snapshot().getVersion();
+    }
+
+    /**
+     * @return the version of the teacher, or {@code null} if it does not exist
+     */
+    @Timed("service.teacher")
+    public ResourceVersion getVersion(Long id) {
+        Teacher teacher = snapshot().getTeachersById().get(id);
+        if (teacher != null) {
+            return ResourceVersion.of(teacher.getUpdatedAt());
+        }
+
+        return this.teacherRepository.findUpdatedAtById(id).map(ResourceVersion::of).orElse(null);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${oc.app.teacherCatalogRefreshMs:60000}",
+            fixedDelayString = "${oc.app.teacherCatalogRefreshMs:60000}")
+    public void refresh() {
+        load();
+    }
+
+    public synchronized void invalidate() {
+        this.generation++;
+        this.snapshot = null;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("teacher.catalog.size", this, service -> service.currentSize())
+                .description("Teachers held by the in-memory catalog")
+                .register(registry);
+        Gauge.builder("teacher.catalog.age", this, service -> service.currentAgeSeconds())
+                .description("Seconds since the teacher catalog was loaded")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    private synchronized Snapshot currentSnapshot() {
+        return this.snapshot;
+    }
+
+    private double currentSize() {
+        Snapshot current = currentSnapshot();
+        return current != null ? current.getTeachers().size() : 0;
+    }
+
+    private double currentAgeSeconds() {
+        Snapshot current = currentSnapshot();
+        return current != null ? Duration.between(current.getLoadedAt(), Instant.now()).toMillis() / 1000.0 : 0;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = currentSnapshot();
+        return current != null ? current : load();
+    }
+
+    private Snapshot load() {
+        long loadedGeneration;
+        synchronized (this) {
+            loadedGeneration = this.generation;
+        }
+
+        Snapshot loaded = new Snapshot(this.teacherRepository.findAll());
+
+        synchronized (this) {
+            if (this.generation == loadedGeneration) {
+                this.snapshot = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    @Getter
+    private static class Snapshot {
+        private final List<Teacher> teachers;
+
+        private final Map<Long, Teacher> teachersById;
+
+        private final ResourceVersion version;
+
+        private final Instant loadedAt = Instant.now();
+
+        Snapshot(List<Teacher> teachers) {
+            this.teachers = Collections.unmodifiableList(teachers);
+            this.teachersById = teachers.stream().collect(Collectors.toUnmodifiableMap(Teacher::getId, Function.identity()));
+            LocalDateTime lastModified = teachers.stream().map(Teacher::getUpdatedAt).filter(Objects::nonNull)
+                    .max(Comparator.naturalOrder()).orElse(null);
+            this.version = ResourceVersion.of(teachers.size(), lastModified);
+        }
     }
 }
@@ -1,22 +1,63 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 @Service
 public class UserService {
     private final UserRepository userRepository;
 
-    public UserService(UserRepository userRepository) {
+    private final UserDetailsCache userDetailsCache;
+
+    private final TokenRevocationRegistry tokenRevocationRegistry;
+
+    public UserService(UserRepository userRepository, UserDetailsCache userDetailsCache,
+            TokenRevocationRegistry tokenRevocationRegistry) {
         this.userRepository = userRepository;
+        this.userDetailsCache = userDetailsCache;
+        this.tokenRevocationRegistry = tokenRevocationRegistry;
     }
 
+    @Timed("service.user")
     public void delete(Long id) {
         this.userRepository.deleteById(id);
+        this.userDetailsCache.evictById(id);
+        this.tokenRevocationRegistry.revoke(id);
     }
 
+    @Timed("service.user")
     public User findById(Long id) {
         return this.userRepository.findById(id).orElse(null);
     }
+
+    /**
+     * Loads the users of the given ids with a single query, in the order of the ids and without duplicates.
+     *
+     * @throws BadRequestException if an id is null or does not match any user
+     */
+    @Timed("service.user")
+    public List<User> findAllById(List<Long> ids) {
+        List<Long> distinctIds = ids.stream().distinct().collect(Collectors.toList());
+        if (distinctIds.contains(null)) {
+            throw new BadRequestException();
+        }
+
+        Map<Long, User> users = this.userRepository.findAllById(distinctIds).stream()
+                .collect(Collectors.toMap(User::getId, Function.identity()));
+        if (users.size() != distinctIds.size()) {
+            throw new BadRequestException();
+        }
+
+        return distinctIds.stream().map(users::get).collect(Collectors.toList());
+    }
 }
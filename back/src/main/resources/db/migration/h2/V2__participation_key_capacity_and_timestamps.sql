@@ -0,0 +1,22 @@
+-- Same changes as the MySQL migration
+CREATE TABLE PARTICIPATE_DISTINCT (
+  user_id INT,
+  session_id INT
+);
+INSERT INTO PARTICIPATE_DISTINCT (user_id, session_id)
+SELECT DISTINCT user_id, session_id FROM PARTICIPATE WHERE user_id IS NOT NULL AND session_id IS NOT NULL;
+DELETE FROM PARTICIPATE;
+INSERT INTO PARTICIPATE (user_id, session_id) SELECT user_id, session_id FROM PARTICIPATE_DISTINCT;
+DROP TABLE PARTICIPATE_DISTINCT;
+ALTER TABLE PARTICIPATE ADD CONSTRAINT uk_participate_session_user UNIQUE (session_id, user_id);
+
+ALTER TABLE SESSIONS ADD COLUMN capacity INT;
+ALTER TABLE SESSIONS ADD COLUMN seats_taken INT DEFAULT 0 NOT NULL;
+UPDATE SESSIONS SET seats_taken = (SELECT COUNT(*) FROM PARTICIPATE WHERE PARTICIPATE.session_id = SESSIONS.id);
+
+ALTER TABLE TEACHERS ALTER COLUMN updated_at SET DATA TYPE TIMESTAMP(6);
+ALTER TABLE TEACHERS ALTER COLUMN updated_at SET DEFAULT CURRENT_TIMESTAMP(6);
+ALTER TABLE TEACHERS ALTER COLUMN updated_at SET ON UPDATE CURRENT_TIMESTAMP(6);
+ALTER TABLE SESSIONS ALTER COLUMN updated_at SET DATA TYPE TIMESTAMP(6);
+ALTER TABLE SESSIONS ALTER COLUMN updated_at SET DEFAULT CURRENT_TIMESTAMP(6);
+ALTER TABLE SESSIONS ALTER COLUMN updated_at SET ON UPDATE CURRENT_TIMESTAMP(6);
@@ -0,0 +1,3 @@
+-- Same allocation as the MySQL migration, from a native sequence
+CREATE SEQUENCE session_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE session_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM SESSIONS);
@@ -0,0 +1,16 @@
+-- Same indexes as the MySQL migration. Like MySQL, H2 indexes foreign key columns itself: the foreign keys
+-- are created again after the explicit indexes so that they use them instead of their own.
+ALTER TABLE PARTICIPATE ALTER COLUMN user_id SET NOT NULL;
+ALTER TABLE PARTICIPATE ALTER COLUMN session_id SET NOT NULL;
+ALTER TABLE PARTICIPATE ADD CONSTRAINT pk_participate PRIMARY KEY (session_id, user_id);
+ALTER TABLE PARTICIPATE DROP CONSTRAINT uk_participate_session_user;
+
+ALTER TABLE PARTICIPATE DROP CONSTRAINT fk_participate_user;
+CREATE INDEX idx_participate_user ON PARTICIPATE (user_id);
+ALTER TABLE PARTICIPATE ADD CONSTRAINT fk_participate_user FOREIGN KEY (user_id) REFERENCES USERS (id);
+
+CREATE INDEX idx_sessions_date ON SESSIONS (date, id);
+
+ALTER TABLE SESSIONS DROP CONSTRAINT fk_sessions_teacher;
+CREATE INDEX idx_sessions_teacher ON SESSIONS (teacher_id);
+ALTER TABLE SESSIONS ADD CONSTRAINT fk_sessions_teacher FOREIGN KEY (teacher_id) REFERENCES TEACHERS (id);
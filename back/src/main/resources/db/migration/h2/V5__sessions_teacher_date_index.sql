@@ -0,0 +1,5 @@
+-- Same index as the MySQL migration, the foreign key being created again over it
+ALTER TABLE SESSIONS DROP CONSTRAINT fk_sessions_teacher;
+DROP INDEX idx_sessions_teacher;
+CREATE INDEX idx_sessions_teacher_date ON SESSIONS (teacher_id, date, id);
+ALTER TABLE SESSIONS ADD CONSTRAINT fk_sessions_teacher FOREIGN KEY (teacher_id) REFERENCES TEACHERS (id);
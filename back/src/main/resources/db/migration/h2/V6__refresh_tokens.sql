@@ -0,0 +1,8 @@
+-- Same table as the MySQL migration, H2 comparing strings case-sensitively by default
+CREATE TABLE REFRESH_TOKENS (
+  token_hash CHAR(43) PRIMARY KEY,
+  user_id INT NOT NULL,
+  expires_at TIMESTAMP NOT NULL,
+  CONSTRAINT fk_refresh_tokens_user FOREIGN KEY (user_id) REFERENCES USERS (id) ON DELETE CASCADE
+);
+CREATE INDEX idx_refresh_tokens_expires_at ON REFRESH_TOKENS (expires_at);
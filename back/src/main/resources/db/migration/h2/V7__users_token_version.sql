@@ -0,0 +1,2 @@
+-- Same column as the MySQL migration
+ALTER TABLE USERS ADD COLUMN token_version INT NOT NULL DEFAULT 0;
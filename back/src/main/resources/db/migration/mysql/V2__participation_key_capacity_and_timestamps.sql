@@ -0,0 +1,21 @@
+-- A user takes a single seat per session: duplicate participations, and rows without a user or a session,
+-- are dropped before the unique key is added.
+CREATE TABLE `PARTICIPATE_DISTINCT` (
+  `user_id` INT,
+  `session_id` INT
+);
+INSERT INTO `PARTICIPATE_DISTINCT` (`user_id`, `session_id`)
+SELECT DISTINCT `user_id`, `session_id` FROM `PARTICIPATE` WHERE `user_id` IS NOT NULL AND `session_id` IS NOT NULL;
+DELETE FROM `PARTICIPATE`;
+INSERT INTO `PARTICIPATE` (`user_id`, `session_id`) SELECT `user_id`, `session_id` FROM `PARTICIPATE_DISTINCT`;
+DROP TABLE `PARTICIPATE_DISTINCT`;
+ALTER TABLE `PARTICIPATE` ADD CONSTRAINT `uk_participate_session_user` UNIQUE (`session_id`, `user_id`);
+
+-- Sessions have an optional capacity, and the seats taken are counted on the session row itself
+ALTER TABLE `SESSIONS` ADD COLUMN `capacity` INT;
+ALTER TABLE `SESSIONS` ADD COLUMN `seats_taken` INT NOT NULL DEFAULT 0;
+UPDATE `SESSIONS` SET `seats_taken` = (SELECT COUNT(*) FROM `PARTICIPATE` WHERE `PARTICIPATE`.`session_id` = `SESSIONS`.`id`);
+
+-- ETags and Last-Modified are derived from updated_at: microseconds tell two updates of the same second apart
+ALTER TABLE `TEACHERS` MODIFY `updated_at` DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
+ALTER TABLE `SESSIONS` MODIFY `updated_at` DATETIME(6) DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6);
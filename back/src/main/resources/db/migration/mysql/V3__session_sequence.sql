@@ -0,0 +1,7 @@
+-- Session ids are allocated by Hibernate in blocks of 50 from this table, which allows batched inserts.
+-- The table holds the first id of the next block: it starts past the sessions already created.
+CREATE TABLE `session_seq` (
+  `next_val` BIGINT
+);
+
+INSERT INTO `session_seq` (`next_val`) SELECT COALESCE(MAX(`id`), 0) + 1 FROM `SESSIONS`;
@@ -0,0 +1,11 @@
+-- PARTICIPATE is looked up by session (participant lists, seat recount) and by user (a user's sessions):
+-- the primary key serves the first, idx_participate_user the second.
+ALTER TABLE `PARTICIPATE` MODIFY `user_id` INT NOT NULL;
+ALTER TABLE `PARTICIPATE` MODIFY `session_id` INT NOT NULL;
+ALTER TABLE `PARTICIPATE` ADD PRIMARY KEY (`session_id`, `user_id`);
+ALTER TABLE `PARTICIPATE` DROP INDEX `uk_participate_session_user`;
+CREATE INDEX `idx_participate_user` ON `PARTICIPATE` (`user_id`);
+
+-- Listings, cursor pages and exports are ordered by (date, id)
+CREATE INDEX `idx_sessions_date` ON `SESSIONS` (`date`, `id`);
+CREATE INDEX `idx_sessions_teacher` ON `SESSIONS` (`teacher_id`);
@@ -0,0 +1,4 @@
+-- The session search filters on teacher then on a date range: extend the teacher index with the date
+-- (and id, the listing order). It still leads with teacher_id, so it serves the foreign key as well.
+CREATE INDEX `idx_sessions_teacher_date` ON `SESSIONS` (`teacher_id`, `date`, `id`);
+DROP INDEX `idx_sessions_teacher` ON `SESSIONS`;
@@ -0,0 +1,10 @@
+-- Refresh tokens are stored as the base64url SHA-256 of the token: a renewal is a primary key lookup.
+-- The binary ASCII collation keeps the comparison case-sensitive (in an executable comment, which H2 skips
+-- in the migration test); expired rows are purged through the index.
+CREATE TABLE `REFRESH_TOKENS` (
+  `token_hash` CHAR(43) /*!40101 CHARACTER SET ascii COLLATE ascii_bin */ PRIMARY KEY,
+  `user_id` INT NOT NULL,
+  `expires_at` DATETIME NOT NULL,
+  CONSTRAINT `fk_refresh_tokens_user` FOREIGN KEY (`user_id`) REFERENCES `USERS` (`id`) ON DELETE CASCADE
+);
+CREATE INDEX `idx_refresh_tokens_expires_at` ON `REFRESH_TOKENS` (`expires_at`);
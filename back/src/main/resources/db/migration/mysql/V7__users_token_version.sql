@@ -0,0 +1,3 @@
+-- Version of the access tokens of each user, carried by their "ver" claim: incrementing it rejects
+-- every token issued before, on every instance once their cached version expires.
+ALTER TABLE `USERS` ADD COLUMN `token_version` INT NOT NULL DEFAULT 0;
@@ -1,13 +1,64 @@
 package com.openclassrooms.starterjwt;
 
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.services.SessionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 @SpringBootTest
+@AutoConfigureMetrics
 public class SpringBootSecurityJwtApplicationTests {
 
+	@Autowired
+	private MeterRegistry meterRegistry;
+
+	@Autowired
+	private PrometheusMeterRegistry prometheusMeterRegistry;
+
+	@Autowired
+	private SessionService sessionService;
+
+	@Autowired
+	private SessionMapper sessionMapper;
+
 	@Test
 	public void contextLoads() {
 	}
 
+	@Test
+	public void connectionPoolMetricsArePublished() {
+		assertNotNull(meterRegistry.find("hikaricp.connections.active").tag("pool", "yoga").gauge());
+		assertNotNull(meterRegistry.find("hikaricp.connections.idle").tag("pool", "yoga").gauge());
+		assertNotNull(meterRegistry.find("hikaricp.connections.pending").tag("pool", "yoga").gauge());
+		assertNotNull(meterRegistry.find("hikaricp.connections.acquire").tag("pool", "yoga").timer());
+	}
+
+	@Test
+	public void serviceAndMapperTimersArePublished() {
+		sessionMapper.toDto(sessionService.findAll(), Collections.emptyMap());
+
+		assertNotNull(meterRegistry.find("service.session").tag("method", "findAll").tag("exception", "none").timer());
+		assertNotNull(meterRegistry.find("mapper.session").tag("method", "toDto").timer());
+	}
+
+	@Test
+	public void metricsAreScrapedInPrometheusFormat() {
+		String scrape = prometheusMeterRegistry.scrape();
+
+		for (String metric : List.of("session_participation_total", "jwt_validation_total", "jwt_revoked_total",
+				"auth_login_seconds_count", "executor_rejected_total")) {
+			assertTrue(scrape.contains(metric), metric);
+		}
+	}
+
 }
@@ -0,0 +1,50 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.SpringBootSecurityJwtApplication;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Application context shared by the benchmarks of a fork, started on the in-memory H2 database
+ * of the test properties.
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = run();
+    }
+
+    /**
+     * Starts the application quietly on a random port, with extra command line properties.
+     */
+    static ConfigurableApplicationContext run(String... properties) {
+        String[] args = {
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.generate_statistics=false",
+                "--logging.level.root=WARN"};
+        return SpringApplication.run(SpringBootSecurityJwtApplication.class,
+                Stream.concat(Arrays.stream(args), Arrays.stream(properties)).toArray(String[]::new));
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
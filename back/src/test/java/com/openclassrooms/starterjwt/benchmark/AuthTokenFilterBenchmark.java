@@ -0,0 +1,74 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.AuthTokenFilter;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Authentication of one request by the AuthTokenFilter bean, from the Authorization header to the
+ * security context, in the default mode (principal from the cache) and in stateless mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthTokenFilterBenchmark {
+    @Param({"false", "true"})
+    private boolean stateless;
+
+    private AuthTokenFilter authTokenFilter;
+
+    private String authorization;
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        authTokenFilter = application.getBean(AuthTokenFilter.class);
+        ReflectionTestUtils.setField(authTokenFilter, "stateless", stateless);
+
+        User user = application.getBean(UserRepository.class)
+                .save(new User("filter@studio.com", "Doe", "John", "password", false));
+        UserDetailsImpl userDetails = (UserDetailsImpl) application.getBean(UserDetailsServiceImpl.class)
+                .loadUserByUsername(user.getEmail());
+        int tokenVersion = application.getBean(TokenRevocationRegistry.class).currentVersion(user.getId());
+        authorization = "Bearer " + application.getBean(JwtUtils.class)
+                .generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null), tokenVersion);
+    }
+
+    @Benchmark
+    public Authentication authenticate() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session");
+        request.addHeader("Authorization", authorization);
+        try {
+            authTokenFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Jwts;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token work done at login and by AuthTokenFilter for each authenticated request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthenticationBenchmark {
+    private static final String SECRET = "openclassrooms";
+
+    private JwtUtils jwtUtils;
+
+    private String token;
+
+    private UsernamePasswordAuthenticationToken authentication;
+
+    @Setup
+    public void setUp() {
+        jwtUtils = new JwtUtils(SECRET, 86400000);
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(1L).username("yoga@studio.com").firstName("Admin").lastName("Admin").admin(true).build();
+        authentication = new UsernamePasswordAuthenticationToken(userDetails, null);
+        token = jwtUtils.generateJwtToken(authentication);
+    }
+
+    /**
+     * Previous filter behaviour: validate, then parse again for the subject, with a new parser
+     * and a key re-derived from the secret each time.
+     */
+    @Benchmark
+    public String validateThenParse() {
+        Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token);
+        return Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody().getSubject();
+    }
+
+    @Benchmark
+    public String generate() {
+        return jwtUtils.generateJwtToken(authentication, 0);
+    }
+
+    @Benchmark
+    public String singleParse() {
+        return jwtUtils.getValidatedClaims(token).getSubject();
+    }
+}
@@ -0,0 +1,59 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.exception.TooManyRequestsException;
+import com.openclassrooms.starterjwt.security.services.LoginAttemptLimiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the login throttling check from 8 threads: an attempt of an email that exhausted its limit
+ * (rejected before any password hashing) and an attempt still under the limits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class LoginAttemptLimiterBenchmark {
+    private LoginAttemptLimiter throttled;
+
+    private LoginAttemptLimiter unlimited;
+
+    @Setup
+    public void setUp() {
+        throttled = new LoginAttemptLimiter(5, 50, 60_000, 100_000);
+        for (int i = 0; i < 5; i++) {
+            throttled.acquire("attacked@studio.com", "10.0.0." + i);
+        }
+        unlimited = new LoginAttemptLimiter(Character.MAX_VALUE, Character.MAX_VALUE, 1, 100_000);
+    }
+
+    @Benchmark
+    public boolean rejected() {
+        try {
+            throttled.acquire("attacked@studio.com", "10.0.1.1");
+            return true;
+        } catch (TooManyRequestsException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean accepted() {
+        unlimited.acquire("yoga@studio.com", "10.0.1.1");
+        return true;
+    }
+}
@@ -0,0 +1,104 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET /api/session over HTTP from 32 concurrent clients, with the listing snapshot off so that every
+ * request goes to the database, for a starved and for the production-sized connection pool.
+ * The sample mode reports latency percentiles: with too few connections the request threads queue
+ * on the pool (hikaricp.connections.pending) and the tail latency grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Threads(32)
+@Fork(1)
+public class SessionListingLoadBenchmark {
+    @Param({"2", "16"})
+    public int poolSize;
+
+    private ConfigurableApplicationContext context;
+
+    private HttpClient httpClient;
+
+    private HttpRequest listSessions;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        context = ApplicationState.run(
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "--spring.datasource.hikari.minimum-idle=" + poolSize,
+                "--oc.app.sessionListSnapshot=false");
+
+        Teacher teacher = context.getBean(TeacherRepository.class)
+                .save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            sessions.add(Session.builder().name("Session " + i).date(new Date()).description("Yoga")
+                    .teacher(teacher).users(new ArrayList<>()).build());
+        }
+        context.getBean(SessionRepository.class).saveAll(sessions);
+        context.getBean(UserRepository.class).save(new User("load@studio.com", "Doe", "John", "password", false));
+        UserDetailsImpl userDetails = (UserDetailsImpl) context.getBean(UserDetailsServiceImpl.class).loadUserByUsername("load@studio.com");
+        String token = context.getBean(JwtUtils.class).generateJwtToken(
+                new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities()),
+                context.getBean(TokenRevocationRegistry.class).currentVersion(userDetails.getId()));
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        httpClient = HttpClient.newHttpClient();
+        listSessions = HttpRequest.newBuilder(URI.create(baseUrl + "/api/session"))
+                .header("Authorization", "Bearer " + token)
+                .GET()
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public int listSessions() throws Exception {
+        HttpResponse<byte[]> response = httpClient.send(listSessions, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("GET /api/session answered " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
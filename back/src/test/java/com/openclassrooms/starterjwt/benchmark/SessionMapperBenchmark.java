@@ -0,0 +1,91 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.dto.SessionDto;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Mapping of session lists as done by the session endpoints. toEntity resolves the teacher and
+ * the participants through the services, so it includes their database lookups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionMapperBenchmark {
+    private static final int PARTICIPANTS = 5;
+
+    @Param({"100", "1000"})
+    private int size;
+
+    private SessionMapper sessionMapper;
+
+    private List<Session> sessions;
+
+    private List<SessionDto> sessionDtos;
+
+    private Map<Long, List<Long>> participantIds;
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        sessionMapper = application.getBean(SessionMapper.class);
+        Teacher teacher = application.getBean(TeacherRepository.class)
+                .save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < PARTICIPANTS; i++) {
+            users.add(application.getBean(UserRepository.class)
+                    .save(new User("mapper" + i + "@studio.com", "Doe", "John", "password", false)));
+        }
+        List<Long> userIds = users.stream().map(User::getId).collect(Collectors.toList());
+
+        sessions = new ArrayList<>(size);
+        participantIds = new HashMap<>();
+        for (long id = 1; id <= size; id++) {
+            sessions.add(Session.builder()
+                    .id(id).name("Session " + id).date(new Date()).description("Yoga")
+                    .teacher(teacher).users(users).build());
+            participantIds.put(id, userIds);
+        }
+        sessionDtos = sessionMapper.toDto(sessions);
+    }
+
+    @Benchmark
+    public List<SessionDto> toDto() {
+        return sessionMapper.toDto(sessions);
+    }
+
+    @Benchmark
+    public List<SessionDto> toDtoWithParticipantIds() {
+        return sessionMapper.toDto(sessions, participantIds);
+    }
+
+    @Benchmark
+    public List<Session> toEntity() {
+        return sessionMapper.toEntity(sessionDtos);
+    }
+}
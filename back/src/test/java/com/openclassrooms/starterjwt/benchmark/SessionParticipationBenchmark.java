@@ -0,0 +1,56 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.services.SessionService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Booking then cancelling a seat through SessionService against the in-memory H2 database,
+ * so that each invocation starts from the same state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SessionParticipationBenchmark {
+    private SessionService sessionService;
+
+    private Long sessionId;
+
+    private Long userId;
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        sessionService = application.getBean(SessionService.class);
+        Teacher teacher = application.getBean(TeacherRepository.class)
+                .save(Teacher.builder().firstName("Margot").lastName("Delahaye").build());
+        sessionId = sessionService.create(Session.builder()
+                .name("Session").date(new Date()).description("Yoga").teacher(teacher).capacity(20).build()).getId();
+        userId = application.getBean(UserRepository.class)
+                .save(new User("participant@studio.com", "Doe", "John", "password", false)).getId();
+    }
+
+    @Benchmark
+    public void participateThenLeave() {
+        sessionService.participate(sessionId, userId);
+        sessionService.noLongerParticipate(sessionId, userId);
+    }
+}
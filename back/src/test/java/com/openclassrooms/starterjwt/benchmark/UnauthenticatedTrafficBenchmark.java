@@ -0,0 +1,99 @@
+package com.openclassrooms.starterjwt.benchmark;
+
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Requests that never reach an authenticated handler, over HTTP from 8 concurrent clients: CORS
+ * preflights, calls without a token answered 401 by the entry point, and registrations of a taken
+ * email (answered before any password hashing). They measure what the security filter chain costs
+ * by itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 3)
+@Threads(8)
+@Fork(1)
+public class UnauthenticatedTrafficBenchmark {
+    private ConfigurableApplicationContext context;
+
+    private HttpClient httpClient;
+
+    private HttpRequest preflight;
+
+    private HttpRequest withoutToken;
+
+    private HttpRequest registerTakenEmail;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = ApplicationState.run();
+        context.getBean(UserRepository.class).save(new User("taken@studio.com", "Doe", "John", "password", false));
+
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        httpClient = HttpClient.newHttpClient();
+        preflight = HttpRequest.newBuilder(URI.create(baseUrl + "/api/session"))
+                .method("OPTIONS", HttpRequest.BodyPublishers.noBody())
+                .header("Origin", "http://localhost:4200")
+                .header("Access-Control-Request-Method", "GET")
+                .build();
+        withoutToken = HttpRequest.newBuilder(URI.create(baseUrl + "/api/session"))
+                .GET()
+                .build();
+        registerTakenEmail = HttpRequest.newBuilder(URI.create(baseUrl + "/api/auth/register"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"taken@studio.com\",\"firstName\":\"John\","
+                        + "\"lastName\":\"Doe\",\"password\":\"password\"}"))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public int preflight() throws Exception {
+        return send(preflight, 200);
+    }
+
+    @Benchmark
+    public int withoutToken() throws Exception {
+        return send(withoutToken, 401);
+    }
+
+    @Benchmark
+    public int registerTakenEmail() throws Exception {
+        return send(registerTakenEmail, 400);
+    }
+
+    private int send(HttpRequest request, int expectedStatus) throws Exception {
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != expectedStatus) {
+            throw new IllegalStateException(request.method() + " " + request.uri().getPath() + " answered " + response.statusCode());
+        }
+        return response.body().length;
+    }
+}
@@ -0,0 +1,26 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+/**
+ * The controllers complete their requests on the RequestExecutor: performs the request, then the
+ * async dispatch that writes the response once the CompletableFuture is done.
+ */
+public final class AsyncDispatch {
+
+    private AsyncDispatch() {
+    }
+
+    public static ResultActions perform(MockMvc mockMvc, RequestBuilder requestBuilder) throws Exception {
+        ResultActions resultActions = mockMvc.perform(requestBuilder);
+        MvcResult result = resultActions.andReturn();
+        if (!result.getRequest().isAsyncStarted()) {
+            return resultActions;
+        }
+        return mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result));
+    }
+}
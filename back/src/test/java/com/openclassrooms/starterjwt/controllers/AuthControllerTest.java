@@ -4,9 +4,18 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
 import com.openclassrooms.starterjwt.payload.request.SignupRequest;
+import com.openclassrooms.starterjwt.payload.request.TokenRefreshRequest;
 import com.openclassrooms.starterjwt.payload.response.MessageResponse;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
+import com.openclassrooms.starterjwt.security.jwt.RefreshTokenStore;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import com.openclassrooms.starterjwt.security.services.BoundedPasswordEncoder;
+import com.openclassrooms.starterjwt.security.services.LoginAttemptLimiter;
+import com.openclassrooms.starterjwt.security.services.UserDetailsServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -16,12 +25,29 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 @SpringBootTest
 public class AuthControllerTest {
 
@@ -37,9 +63,27 @@ public class AuthControllerTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
     @Autowired
     private AuthController authController;
 
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+
+    @Autowired
+    private RefreshTokenStore refreshTokenStore;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private LoginAttemptLimiter loginAttemptLimiter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private SignupRequest signupRequest;
     @Mock
     private ObjectMapper objectMapper;
@@ -49,7 +93,6 @@ public class AuthControllerTest {
 
     @BeforeEach
     void setUp() {
-        authController = new AuthController(authenticationManager, passwordEncoder, jwtUtils, userRepository);
         mockMvc = MockMvcBuilders.standaloneSetup(authController).build();
         objectMapper = new ObjectMapper();
     }
@@ -64,7 +107,7 @@ public class AuthControllerTest {
         loginRequest.setPassword("1234");
 
 
-        mockMvc.perform(MockMvcRequestBuilders.post("/api/auth/login")
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/auth/login")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(loginRequest)))
                 .andExpect(MockMvcResultMatchers.status().isOk())
@@ -78,6 +121,26 @@ public class AuthControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Should re-hash a weaker password on login")
+    void giveWeakerHash_thenAuthenticate_shouldUpgradePassword() throws Exception {
+        User user = new User("test@example.com", "Doe", "John", new BCryptPasswordEncoder(4).encode("1234"), false);
+        User newUser = userRepository.save(user);
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("test@example.com");
+        loginRequest.setPassword("1234");
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        String password = userRepository.findById(newUser.getId()).orElseThrow().getPassword();
+        assertTrue(password.startsWith("$2a$05$"));
+        assertTrue(passwordEncoder.matches("1234", password));
+    }
+
     @Test
     @DisplayName("Should register but email already exists")
     void giveSignupRequest_thenRegister_shouldReturnBadRequest() throws Exception {
@@ -92,7 +155,7 @@ public class AuthControllerTest {
 
         MessageResponse messageResponse = new MessageResponse("Error: Email is already taken!");
 
-        mockMvc.perform(MockMvcRequestBuilders.post("/api/auth/register")
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/auth/register")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(signupRequest)))
                 .andExpect(MockMvcResultMatchers.status().isBadRequest())
@@ -116,7 +179,7 @@ public class AuthControllerTest {
 
         MessageResponse messageResponse = new MessageResponse("User registered successfully!");
 
-        mockMvc.perform(MockMvcRequestBuilders.post("/api/auth/register")
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/auth/register")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(signupRequest)))
                 .andExpect(MockMvcResultMatchers.status().isOk())
@@ -124,6 +187,166 @@ public class AuthControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.message").value(messageResponse.getMessage()));
 
     }
+    private String login(String email, String password) throws Exception {
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail(email);
+        loginRequest.setPassword(password);
+
+        String body = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.refreshToken").exists())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("refreshToken").asText();
+    }
+
+    private ResultActions postRefreshToken(String path, String refreshToken) throws Exception {
+        TokenRefreshRequest refreshRequest = new TokenRefreshRequest();
+        refreshRequest.setRefreshToken(refreshToken);
+
+        return AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post(path)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(refreshRequest)));
+    }
+
+    @Test
+    @DisplayName("Should renew the tokens with a refresh token, once")
+    void giveRefreshToken_thenRefresh_shouldRotateTokens() throws Exception {
+        User user = userRepository.save(new User("test@example.com", "Doe", "John", passwordEncoder.encode("1234"), false));
+        String refreshToken = login("test@example.com", "1234");
+
+        String body = postRefreshToken("/api/auth/refresh", refreshToken)
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.token").exists())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.id").value(user.getId()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.username").value("test@example.com"))
+                .andReturn().getResponse().getContentAsString();
+        String token = objectMapper.readTree(body).get("token").asText();
+        String nextRefreshToken = objectMapper.readTree(body).get("refreshToken").asText();
+
+        assertEquals(user.getId(), jwtUtils.getUserDetailsFromClaims(jwtUtils.getValidatedClaims(token)).getId());
+        assertNotEquals(refreshToken, nextRefreshToken);
+        assertEquals(1, refreshTokenRepository.count());
+        postRefreshToken("/api/auth/refresh", refreshToken)
+                .andExpect(MockMvcResultMatchers.status().isUnauthorized());
+        postRefreshToken("/api/auth/refresh", nextRefreshToken)
+                .andExpect(MockMvcResultMatchers.status().isOk());
+    }
+
+    @Test
+    @DisplayName("Should reject an unknown, logged out or revoked refresh token")
+    void giveInvalidRefreshToken_thenRefresh_shouldReturnUnauthorized() throws Exception {
+        User user = userRepository.save(new User("test@example.com", "Doe", "John", passwordEncoder.encode("1234"), false));
+
+        postRefreshToken("/api/auth/refresh", "unknown")
+                .andExpect(MockMvcResultMatchers.status().isUnauthorized());
+
+        String refreshToken = login("test@example.com", "1234");
+        postRefreshToken("/api/auth/logout", refreshToken)
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        postRefreshToken("/api/auth/refresh", refreshToken)
+                .andExpect(MockMvcResultMatchers.status().isUnauthorized());
+
+        refreshToken = login("test@example.com", "1234");
+        tokenRevocationRegistry.revoke(user.getId());
+        postRefreshToken("/api/auth/refresh", refreshToken)
+                .andExpect(MockMvcResultMatchers.status().isUnauthorized());
+    }
+
+    @Test
+    @DisplayName("Should throttle the logins of an email beyond its limit")
+    void giveTooManyLogins_thenAuthenticate_shouldReturnTooManyRequests() throws Exception {
+        userRepository.save(new User("throttled@example.com", "Doe", "John", passwordEncoder.encode("1234"), false));
+        for (int i = 0; i < 20; i++) {
+            login("throttled@example.com", "1234");
+        }
+
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("throttled@example.com");
+        loginRequest.setPassword("1234");
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest)))
+                .andExpect(MockMvcResultMatchers.status().isTooManyRequests())
+                .andExpect(MockMvcResultMatchers.header().string("Retry-After", "60"));
+    }
+
+    @Test
+    @DisplayName("Should answer 503 to the logins beyond the hashing pool and its queue, while still serving other requests")
+    void giveSaturatedPasswordHashing_thenAuthenticate_shouldReturnServiceUnavailable() throws Exception {
+        String password = new BCryptPasswordEncoder(4).encode("1234");
+        CountDownLatch release = new CountDownLatch(1);
+        BCryptPasswordEncoder blockingEncoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public boolean matches(CharSequence rawPassword, String encodedPassword) {
+                if (password.equals(encodedPassword)) {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.matches(rawPassword, encodedPassword);
+            }
+        };
+        userRepository.save(new User("burst@example.com", "Doe", "John", password, false));
+        // One hashing running and one queued out of four request threads
+        BoundedPasswordEncoder boundedPasswordEncoder = new BoundedPasswordEncoder(blockingEncoder, 1, 1, 7);
+        SimpleMeterRegistry hashingMetrics = new SimpleMeterRegistry();
+        boundedPasswordEncoder.bindTo(hashingMetrics);
+        DaoAuthenticationProvider authenticationProvider = new DaoAuthenticationProvider();
+        authenticationProvider.setUserDetailsService(userDetailsService);
+        authenticationProvider.setPasswordEncoder(boundedPasswordEncoder);
+        // The provider hashes a dummy password on its first lookup: done here, only the logins reach the pool
+        assertThrows(BadCredentialsException.class, () -> authenticationProvider.authenticate(
+                new UsernamePasswordAuthenticationToken("unknown@example.com", "1234")));
+        RequestExecutor requestExecutor = new RequestExecutor(4, 10);
+        MockMvc burstMockMvc = MockMvcBuilders.standaloneSetup(new AuthController(new ProviderManager(authenticationProvider),
+                boundedPasswordEncoder, jwtUtils, userRepository, tokenRevocationRegistry, refreshTokenStore,
+                userDetailsService, loginAttemptLimiter, requestExecutor, meterRegistry)).build();
+        LoginRequest loginRequest = new LoginRequest();
+        loginRequest.setEmail("burst@example.com");
+        loginRequest.setPassword("1234");
+
+        try {
+            List<MvcResult> logins = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                logins.add(burstMockMvc.perform(MockMvcRequestBuilders.post("/api/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(loginRequest))).andReturn());
+            }
+            while (hashingMetrics.get("executor.rejected").tag("name", "passwordHashing").functionCounter().count() < 2) {
+                Thread.onSpinWait();
+            }
+
+            TokenRefreshRequest refreshRequest = new TokenRefreshRequest();
+            refreshRequest.setRefreshToken("unknown");
+            AsyncDispatch.perform(burstMockMvc, MockMvcRequestBuilders.post("/api/auth/refresh")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(refreshRequest)))
+                    .andExpect(MockMvcResultMatchers.status().isUnauthorized());
+
+            release.countDown();
+            int unavailable = 0;
+            for (MvcResult login : logins) {
+                MvcResult result = burstMockMvc.perform(MockMvcRequestBuilders.asyncDispatch(login)).andReturn();
+                if (result.getResponse().getStatus() == 503) {
+                    assertEquals("7", result.getResponse().getHeader("Retry-After"));
+                    unavailable++;
+                } else {
+                    assertEquals(200, result.getResponse().getStatus());
+                }
+            }
+            assertEquals(2, unavailable);
+        } finally {
+            release.countDown();
+            requestExecutor.destroy();
+            boundedPasswordEncoder.destroy();
+        }
+    }
+
     @AfterEach
     public void cleanup() {
         userRepository.deleteAll();
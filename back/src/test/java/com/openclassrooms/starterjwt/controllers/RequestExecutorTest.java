@@ -0,0 +1,72 @@
+package com.openclassrooms.starterjwt.controllers;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RequestExecutorTest {
+
+    private RequestExecutor requestExecutor;
+
+    @AfterEach
+    public void cleanup() {
+        SecurityContextHolder.clearContext();
+        if (requestExecutor != null) {
+            requestExecutor.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Should run the task with the caller's security context")
+    void givenAuthenticatedCaller_thenSupply_shouldPropagateSecurityContext() {
+        requestExecutor = new RequestExecutor(1, 1);
+        Authentication authentication = new TestingAuthenticationToken("yoga@studio.com", null);
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        Authentication seen = requestExecutor.supply(() -> SecurityContextHolder.getContext().getAuthentication()).join();
+
+        assertSame(authentication, seen);
+    }
+
+    @Test
+    @DisplayName("Should reject with 503 when the pool and its queue are full")
+    void givenSaturatedExecutor_thenSupply_shouldThrowServiceUnavailable() throws Exception {
+        requestExecutor = new RequestExecutor(1, 1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        requestExecutor.bindTo(registry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Boolean> running = requestExecutor.supply(() -> {
+            started.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        });
+        started.await();
+        CompletableFuture<Boolean> queued = requestExecutor.supply(() -> true);
+
+        assertThrows(ServiceUnavailableException.class, () -> requestExecutor.supply(() -> true));
+        assertEquals(1.0, registry.get("executor.rejected").tag("name", "requests").functionCounter().count());
+
+        release.countDown();
+        assertEquals(true, running.join());
+        assertEquals(true, queued.join());
+    }
+}
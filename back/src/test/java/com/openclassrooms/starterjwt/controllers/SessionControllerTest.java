@@ -1,30 +1,45 @@
 package com.openclassrooms.starterjwt.controllers;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.mapper.SessionMapper;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.services.SessionService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.util.NestedServletException;
 
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
@@ -43,10 +58,15 @@ public class SessionControllerTest {
     private SessionRepository sessionRepository;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private TeacherRepository teacherRepository;
 
     @Autowired
     private SessionController sessionController;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     private MockMvc mockMvc;
 
     private ObjectMapper objectMapper;
@@ -56,8 +76,6 @@ public class SessionControllerTest {
 
     @BeforeEach
     void setUp(){
-        sessionService = new SessionService(sessionRepository, userRepository);
-        sessionController = new SessionController(sessionService, sessionMapper);
         mockMvc = MockMvcBuilders.standaloneSetup(sessionController).build();
         objectMapper = new ObjectMapper();
     }
@@ -81,7 +99,7 @@ public class SessionControllerTest {
 
         SessionDto expectedSessionDto = sessionMapper.toDto(session);
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/session/{id}", expectedSessionDto.getId()))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/{id}", expectedSessionDto.getId()))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.content().contentType("application/json"))
                 .andExpect(MockMvcResultMatchers.jsonPath("$.name").value("Yoga"))
@@ -93,7 +111,7 @@ public class SessionControllerTest {
     @DisplayName("Should return a not found status")
     void giveIdSession_thenFindSessionById_shouldNotFoundStatus() throws Exception {
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/session/{id}", id))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/{id}", id))
                 .andExpect(MockMvcResultMatchers.status().isNotFound());
 
     }
@@ -102,9 +120,9 @@ public class SessionControllerTest {
     @DisplayName("Should return a bad request status")
     void giveIdSession_thenFindSessionById_shouldBadRequestStatus() throws Exception {
 
-        sessionController.findById("a");
+        sessionController.findById("a", null);
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/session/{id}", "a"))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/{id}", "a"))
                 .andExpect(MockMvcResultMatchers.status().isBadRequest());
 
     }
@@ -129,7 +147,7 @@ public class SessionControllerTest {
 
         List<Session> sessions = List.of(new Session().setName("Yoga"), new Session().setName("Zen"));
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/session"))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session"))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Yoga"))
@@ -137,6 +155,219 @@ public class SessionControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Should list 1000 sessions with a constant number of SQL statements")
+    void giveManySessions_thenFindAll_shouldNotLoadParticipantsPerSession() throws Exception {
+
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+        User user = userRepository.save(new User("test@example.com", "Doe", "John", "1234", false));
+
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Session session = new Session();
+            session.setName("Yoga " + i);
+            session.setDate(new Date());
+            session.setDescription("Description session");
+            session.setTeacher(teacher);
+            session.setUsers(i % 2 == 0 ? List.of(user) : new ArrayList<>());
+            sessions.add(session);
+        }
+        sessionRepository.saveAll(sessions);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1000))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].teacher_id").value(teacher.getId()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].users[0]").value(user.getId()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[1].users").isEmpty());
+
+        // One statement for the listing version, one for the sessions joined with their teacher,
+        // one for every participant id
+        assertEquals(3, statistics.getPrepareStatementCount());
+
+    }
+
+    @Test
+    @DisplayName("Should answer not modified until the session or its participants change")
+    void giveETag_thenFindSessionById_shouldReturnNotModifiedStatus() throws Exception {
+
+        Session session = new Session();
+        session.setName("Yoga");
+        session.setDate(new Date());
+        session.setDescription("Description session");
+        Session savedSession = sessionRepository.save(session);
+        User user = userRepository.save(new User("test@example.com", "Doe", "John", "1234", false));
+
+        String eTag = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/{id}", savedSession.getId()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().exists("Last-Modified"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotNull(eTag);
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/{id}", savedSession.getId()).header("If-None-Match", eTag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified())
+                .andExpect(MockMvcResultMatchers.content().string(""));
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/{id}/participate/{userId}", savedSession.getId(), user.getId()))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/{id}", savedSession.getId()).header("If-None-Match", eTag))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.users[0]").value(user.getId()));
+
+    }
+
+    @Test
+    @DisplayName("Should answer a new version once an update changed only the participants")
+    void giveETag_thenUpdateParticipants_shouldReturnOkStatus() throws Exception {
+
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setName("Yoga");
+        sessionDto.setDate(new Date());
+        sessionDto.setDescription("Description session");
+        sessionDto.setTeacher_id(1L);
+        Session savedSession = sessionService.create(sessionMapper.toEntity(sessionDto));
+        User user = userRepository.save(new User("test@example.com", "Doe", "John", "1234", false));
+
+        MvcResult result = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/{id}", savedSession.getId()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn();
+        String eTag = result.getResponse().getHeader("ETag");
+
+        // The client sends back the session it read, timestamps included, with one more participant
+        ObjectNode body = (ObjectNode) objectMapper.readTree(result.getResponse().getContentAsString());
+        body.put("teacher_id", 1L);
+        body.putArray("users").add(user.getId());
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.put("/api/session/{id}", savedSession.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(body)))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/{id}", savedSession.getId()).header("If-None-Match", eTag))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.users[0]").value(user.getId()));
+
+    }
+
+    @Test
+    @DisplayName("Should answer not modified for an unchanged listing without loading the sessions")
+    void giveETag_thenFindAll_shouldReturnNotModifiedStatus() throws Exception {
+
+        Session session = new Session();
+        session.setName("Yoga");
+        session.setDate(new Date());
+        session.setDescription("Description session");
+        sessionRepository.save(session);
+
+        String eTag = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session").header("If-None-Match", eTag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        sessionRepository.deleteAll();
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session").header("If-None-Match", eTag))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$").isEmpty());
+
+    }
+
+    @Test
+    @DisplayName("Should page through sessions with a cursor")
+    void giveSize_thenFindAll_shouldReturnPagesOrderedByDate() throws Exception {
+
+        for (int i = 0; i < 3; i++) {
+            Session session = new Session();
+            session.setName("Yoga " + i);
+            session.setDate(new Date(1_700_000_000_000L + i * 60_000L));
+            session.setDescription("Description session");
+            sessionRepository.save(session);
+        }
+
+        String firstPage = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session").param("size", "2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions[0].name").value("Yoga 0"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions[1].name").value("Yoga 1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor").isNotEmpty())
+                .andReturn().getResponse().getContentAsString();
+
+        String cursor = objectMapper.readTree(firstPage).get("nextCursor").asText();
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session").param("size", "2").param("cursor", cursor))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions[0].name").value("Yoga 2"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor").doesNotExist());
+
+    }
+
+    @Test
+    @DisplayName("Should search the sessions of a date window and teacher")
+    void giveWindowAndTeacher_thenFindAll_shouldReturnMatchingSessions() throws Exception {
+
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+        Teacher other = teacherRepository.save(new Teacher().setFirstName("Hélène").setLastName("Thiercelin"));
+
+        List<Session> sessions = new ArrayList<>();
+        for (int day = 1; day <= 10; day++) {
+            Session session = new Session();
+            session.setName("Yoga " + day);
+            session.setDate(Date.from(Instant.parse("2024-03-01T09:00:00Z").plus(day, ChronoUnit.DAYS)));
+            session.setDescription("Description session");
+            session.setTeacher(day % 2 == 0 ? teacher : other);
+            session.setUsers(new ArrayList<>());
+            sessions.add(session);
+        }
+        sessionRepository.saveAll(sessions);
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session")
+                        .param("from", "2024-03-04T00:00:00Z")
+                        .param("to", "2024-03-08T09:00:00Z"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(4))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Yoga 3"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[3].name").value("Yoga 6"));
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session")
+                        .param("from", "2024-03-04T00:00:00Z")
+                        .param("teacherId", teacher.getId().toString()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(4))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Yoga 4"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].teacher_id").value(teacher.getId()));
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session")
+                        .param("from", "2024-03-08T00:00:00Z")
+                        .param("to", "2024-03-04T00:00:00Z"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session")
+                        .param("from", "2024-03-04T00:00:00Z")
+                        .param("size", "2"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Should return a bad request status for an invalid cursor")
+    void giveInvalidCursor_thenFindAll_shouldReturnBadRequestStatus() throws Exception {
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session").param("cursor", "%%%"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+    }
+
     @Test
     @DisplayName("Should create a session")
     void giveIdSession_thenFindSessionById_shouldCreateSession() throws Exception {
@@ -150,7 +381,7 @@ public class SessionControllerTest {
         Session session = sessionMapper.toEntity(sessionDto);
         ObjectMapper objectMapper = new ObjectMapper();
 
-        mockMvc.perform(MockMvcRequestBuilders.post("/api/session")
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(sessionDto)))
                 .andExpect(MockMvcResultMatchers.status().isOk())
@@ -159,6 +390,185 @@ public class SessionControllerTest {
                 .andExpect(MockMvcResultMatchers.jsonPath("$.description").value(session.getDescription()));
     }
 
+    @Test
+    @DisplayName("Should return a bad request status for an unknown participant")
+    void giveUnknownUser_thenCreateSession_shouldReturnBadRequestStatus() throws Exception {
+
+        User user = userRepository.save(new User("test@example.com", "Doe", "John", "1234", false));
+
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setName("Test");
+        sessionDto.setDate(new Date());
+        sessionDto.setDescription("Description session");
+        sessionDto.setTeacher_id(1L);
+        sessionDto.setUsers(List.of(user.getId(), user.getId() + 1));
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sessionDto)))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        assertEquals(0, sessionRepository.count());
+    }
+
+    @Test
+    @DisplayName("Should import sessions with batched inserts")
+    void giveSessionArray_thenCreateAll_shouldBatchInserts() throws Exception {
+
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+        User user = userRepository.save(new User("test@example.com", "Doe", "John", "1234", false));
+
+        List<SessionDto> sessionDtos = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            SessionDto sessionDto = new SessionDto();
+            sessionDto.setName("Yoga " + i);
+            sessionDto.setDate(new Date());
+            sessionDto.setDescription("Description session");
+            sessionDto.setTeacher_id(teacher.getId());
+            sessionDto.setUsers(i == 0 ? List.of(user.getId()) : new ArrayList<>());
+            sessionDtos.add(sessionDto);
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sessionDtos)))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("120 sessions created"));
+
+        assertEquals(120, statistics.getEntityInsertCount());
+        // A few sequence blocks, three insert batches and the participants instead of one insert per session
+        assertTrue(statistics.getPrepareStatementCount() <= 10);
+        assertEquals(120, sessionRepository.count());
+        assertEquals(1, sessionService.findAll().stream().mapToInt(Session::getSeatsTaken).sum());
+    }
+
+    @Test
+    @DisplayName("Should reject the whole import when one session is invalid")
+    void giveInvalidSessionInArray_thenCreateAll_shouldReturnBadRequestStatus() throws Exception {
+
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+
+        SessionDto valid = new SessionDto();
+        valid.setName("Yoga");
+        valid.setDate(new Date());
+        valid.setDescription("Description session");
+        valid.setTeacher_id(teacher.getId());
+        SessionDto invalid = new SessionDto();
+        invalid.setName("Yoga");
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(valid, invalid))))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[{\"name\": "))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        assertEquals(0, sessionRepository.count());
+    }
+
+    @Test
+    @DisplayName("Should export every session in date order")
+    void giveSessions_thenExport_shouldStreamAllSessions() throws Exception {
+
+        User user = userRepository.save(new User("test@example.com", "Doe", "John", "1234", false));
+
+        List<Session> sessions = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Session session = new Session();
+            session.setName("Yoga " + i);
+            session.setDate(new Date(1_700_000_000_000L - i * 60_000L));
+            session.setDescription("Description session");
+            session.setUsers(i == 4 ? List.of(user) : new ArrayList<>());
+            sessions.add(session);
+        }
+        sessionRepository.saveAll(sessions);
+        ReflectionTestUtils.setField(sessionController, "exportBatchSize", 2);
+
+        try {
+            AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/export"))
+                    .andExpect(MockMvcResultMatchers.status().isOk())
+                    .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(5))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Yoga 4"))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[0].users[0]").value(user.getId()))
+                    .andExpect(MockMvcResultMatchers.jsonPath("$[4].name").value("Yoga 0"));
+        } finally {
+            ReflectionTestUtils.setField(sessionController, "exportBatchSize", 500);
+        }
+    }
+
+    @Test
+    @DisplayName("Should leave the export unterminated and fail the request when reading fails halfway")
+    void giveFailingRead_thenExport_shouldNotEndDocument() throws Exception {
+        Session session = Session.builder().id(1L).name("Yoga").date(new Date()).description("Description session").build();
+        SessionService failingSessionService = Mockito.mock(SessionService.class);
+        Mockito.doAnswer(invocation -> {
+            BiConsumer<List<Session>, Map<Long, List<Long>>> consumer = invocation.getArgument(1);
+            consumer.accept(List.of(session), Map.of());
+            throw new DataAccessResourceFailureException("Connection lost");
+        }).when(failingSessionService).exportAll(Mockito.anyInt(), Mockito.any());
+        ReflectionTestUtils.setField(sessionController, "sessionService", failingSessionService);
+
+        try {
+            MvcResult result = mockMvc.perform(MockMvcRequestBuilders.get("/api/session/export")).andReturn();
+
+            NestedServletException exception = assertThrows(NestedServletException.class,
+                    () -> mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result)));
+            assertInstanceOf(DataAccessResourceFailureException.class, exception.getCause());
+            String body = result.getResponse().getContentAsString();
+            assertTrue(body.startsWith("[{\"id\":1,"), body);
+            assertFalse(body.endsWith("]"), body);
+        } finally {
+            ReflectionTestUtils.setField(sessionController, "sessionService", sessionService);
+        }
+    }
+
+    @Test
+    @DisplayName("Should export sessions as NDJSON and CSV")
+    void giveSessions_thenExportAsNdjsonAndCsv_shouldWriteOneLinePerSession() throws Exception {
+
+        User user = userRepository.save(new User("test@example.com", "Doe", "John", "1234", false));
+        User other = userRepository.save(new User("other@example.com", "Doe", "Jane", "1234", false));
+
+        Session first = new Session();
+        first.setName("Yoga, \"flow\"");
+        first.setDate(new Date(1_700_000_000_000L));
+        first.setDescription("Description session");
+        first.setUsers(List.of(user, other));
+        Session second = new Session();
+        second.setName("Yin");
+        second.setDate(new Date(1_700_000_060_000L));
+        second.setDescription("Description session");
+        second.setUsers(new ArrayList<>());
+        sessionRepository.saveAll(List.of(first, second));
+
+        String ndjson = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/export").param("format", "ndjson"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = ndjson.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("Yin", objectMapper.readTree(lines[1]).get("name").asText());
+        assertEquals(2, objectMapper.readTree(lines[0]).get("users").size());
+
+        String csv = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/export").param("format", "csv"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String[] rows = csv.split("\r\n");
+        assertEquals(3, rows.length);
+        assertEquals("id,name,date,teacher_id,description,users,capacity,createdAt,updatedAt", rows[0]);
+        assertTrue(rows[1].startsWith(first.getId() + ",\"Yoga, \"\"flow\"\"\",2023-11-14T22:13:20Z,,Description session,"
+                + user.getId() + " " + other.getId() + ","));
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session/export").param("format", "xml"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
     @Test
     @DisplayName("Should update a session")
     void giveIdSession_thenFindSessionById_shouldUpdateSession() throws Exception {
@@ -176,7 +586,7 @@ public class SessionControllerTest {
 
         sessionRepository.save(session);
 
-        mockMvc.perform(MockMvcRequestBuilders.put("/api/session/{id}", id)
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.put("/api/session/{id}", id)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(id)
                         .content(objectMapper.writeValueAsString(sessionDto)))
@@ -196,7 +606,7 @@ public class SessionControllerTest {
         sessionDto.setDescription("Description session");
         sessionDto.setTeacher_id(1L);
 
-        mockMvc.perform(MockMvcRequestBuilders.put("/api/session/{id}", "a")
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.put("/api/session/{id}", "a")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(id)
                         .content(objectMapper.writeValueAsString(sessionDto)))
@@ -217,7 +627,7 @@ public class SessionControllerTest {
 
         Long sessionId = savedSession.getId();
 
-        mockMvc.perform(delete("/api/session/{id}", sessionId))
+        AsyncDispatch.perform(mockMvc, delete("/api/session/{id}", sessionId))
                 .andExpect(MockMvcResultMatchers.status().isOk());
 
         assertFalse(sessionRepository.existsById(sessionId));
@@ -228,7 +638,7 @@ public class SessionControllerTest {
     @DisplayName("Should delete a session and return a not found status")
     void giveIdSession_thenFindSessionById_shouldReturnNotFoundStatus() throws Exception {
 
-        mockMvc.perform(delete("/api/session/{id}", id))
+        AsyncDispatch.perform(mockMvc, delete("/api/session/{id}", id))
                 .andExpect(MockMvcResultMatchers.status().isNotFound());
 
     }
@@ -237,7 +647,7 @@ public class SessionControllerTest {
     @DisplayName("Should delete a session and return a bad request status")
     void giveIdSession_thenFindSessionById_shouldReturnBadRequestStatus() throws Exception {
 
-        mockMvc.perform(delete("/api/session/{id}", "a"))
+        AsyncDispatch.perform(mockMvc, delete("/api/session/{id}", "a"))
                 .andExpect(MockMvcResultMatchers.status().isBadRequest());
 
     }
@@ -258,20 +668,103 @@ public class SessionControllerTest {
         Long sessionId = savedSession.getId();
         Long userId = savedUser.getId();
 
-        mockMvc.perform(MockMvcRequestBuilders.post("/api/session/{sessionId}/participate/{userId}", sessionId, userId))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/{sessionId}/participate/{userId}", sessionId, userId))
                 .andExpect(MockMvcResultMatchers.status().isOk());
 
         Session updatedSession = sessionRepository.findById(sessionId).orElse(null);
         assertNotNull(updatedSession);
-        assertTrue(updatedSession.getUsers().contains(savedUser));
+        assertTrue(sessionService.findParticipantIds(List.of(updatedSession)).get(sessionId).contains(userId));
+
+    }
+
+    @Test
+    @DisplayName("Should return a bad request status when already participating")
+    void giveIdSession_thenUserParticipateTwice_shouldReturnBadRequestStatus() throws Exception {
+
+        Session session = new Session();
+        session.setName("Zen");
+        session.setDate(new Date());
+        session.setDescription("Description session");
+        Session savedSession = sessionRepository.save(session);
+
+        User savedUser = userRepository.save(new User("test@example.com", "Doe", "John", "1234", false));
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/{sessionId}/participate/{userId}", savedSession.getId(), savedUser.getId()))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/{sessionId}/participate/{userId}", savedSession.getId(), savedUser.getId()))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+        assertEquals(List.of(savedUser.getId()), sessionService.findParticipantIds(List.of(savedSession)).get(savedSession.getId()));
+
+    }
+
+    @Test
+    @DisplayName("Should return a conflict status when the session is full")
+    void giveFullSession_thenUserParticipate_shouldReturnConflictStatus() throws Exception {
+
+        Session session = new Session();
+        session.setName("Zen");
+        session.setDate(new Date());
+        session.setDescription("Description session");
+        session.setCapacity(1);
+        Session savedSession = sessionRepository.save(session);
+
+        User firstUser = userRepository.save(new User("first@example.com", "Doe", "John", "1234", false));
+        User secondUser = userRepository.save(new User("second@example.com", "Doe", "Jane", "1234", false));
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/{sessionId}/participate/{userId}", savedSession.getId(), firstUser.getId()))
+                .andExpect(MockMvcResultMatchers.status().isOk());
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/{sessionId}/participate/{userId}", savedSession.getId(), secondUser.getId()))
+                .andExpect(MockMvcResultMatchers.status().isConflict());
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/{sessionId}/participate/{userId}", savedSession.getId(), firstUser.getId()))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+
+    }
+
+    @Test
+    @DisplayName("Should return a conflict status when created, updated or imported with more participants than the capacity")
+    void giveParticipantsOverCapacity_thenSaveSession_shouldReturnConflictStatus() throws Exception {
+
+        User firstUser = userRepository.save(new User("first@example.com", "Doe", "John", "1234", false));
+        User secondUser = userRepository.save(new User("second@example.com", "Doe", "Jane", "1234", false));
+
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setName("Zen");
+        sessionDto.setDate(new Date());
+        sessionDto.setDescription("Description session");
+        sessionDto.setTeacher_id(1L);
+        sessionDto.setCapacity(1);
+        sessionDto.setUsers(List.of(firstUser.getId(), secondUser.getId()));
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sessionDto)))
+                .andExpect(MockMvcResultMatchers.status().isConflict());
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(sessionDto))))
+                .andExpect(MockMvcResultMatchers.status().isConflict());
+        assertEquals(0, sessionRepository.count());
+
+        sessionDto.setCapacity(2);
+        Session savedSession = sessionService.create(sessionMapper.toEntity(sessionDto));
+        sessionDto.setCapacity(1);
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.put("/api/session/{id}", savedSession.getId())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(sessionDto)))
+                .andExpect(MockMvcResultMatchers.status().isConflict());
 
+        Session session = sessionRepository.findById(savedSession.getId()).orElseThrow();
+        assertEquals(2, session.getCapacity());
+        assertEquals(2, session.getSeatsTaken());
     }
 
     @Test
     @DisplayName("Should participate to a session but return a bad request status")
     void giveIdSession_thenUserParticipateToASession_shouldReturnBadRequestStatus() throws Exception {
 
-        mockMvc.perform(MockMvcRequestBuilders.post("/api/session/{id}/participate/{userId}", "a", "b"))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/session/{id}/participate/{userId}", "a", "b"))
                 .andExpect(MockMvcResultMatchers.status().isBadRequest());
 
     }
@@ -297,13 +790,13 @@ public class SessionControllerTest {
         Long sessionId = savedSession.getId();
         Long userId = savedUser.getId();
 
-        mockMvc.perform(MockMvcRequestBuilders.delete("/api/session/{sessionId}/participate/{userId}", sessionId, userId))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.delete("/api/session/{sessionId}/participate/{userId}", sessionId, userId))
                 // Vérifiez que la réponse est un code de statut OK
                 .andExpect(MockMvcResultMatchers.status().isOk());
 
         Session updatedSession = sessionRepository.findById(sessionId).orElse(null);
         assertNotNull(updatedSession);
-        assertFalse(updatedSession.getUsers().contains(savedUser));
+        assertFalse(sessionService.findParticipantIds(List.of(updatedSession)).containsKey(sessionId));
 
     }
 
@@ -311,7 +804,7 @@ public class SessionControllerTest {
     @DisplayName("Should no longer participate to a session and return a bad request status")
     void giveIdSession_thenUserNoLongerParticipateToASession_shouldReturnBadRequestStatus() throws Exception {
 
-        mockMvc.perform(delete("/api/session/{id}/participate/{userId}", "a", "b"))
+        AsyncDispatch.perform(mockMvc, delete("/api/session/{id}/participate/{userId}", "a", "b"))
                 .andExpect(MockMvcResultMatchers.status().isBadRequest());
 
     }
@@ -320,5 +813,6 @@ public class SessionControllerTest {
     public void cleanup() {
         sessionRepository.deleteAll();
         userRepository.deleteAll();
+        teacherRepository.deleteAll();
     }
 }
@@ -43,8 +43,6 @@ public class TeacherControllerTest {
 
     @BeforeEach
     void setUp(){
-        teacherService = new TeacherService(teacherRepository);
-        teacherController = new TeacherController(teacherService, teacherMapper);
         mockMvc = MockMvcBuilders.standaloneSetup(teacherController).build();
     }
 
@@ -59,7 +57,7 @@ public class TeacherControllerTest {
 
         Teacher newTeacher = teacherRepository.save(teacher);
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/teacher/{id}", newTeacher.getId()))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/teacher/{id}", newTeacher.getId()))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.content().contentType("application/json"))
                 .andExpect(MockMvcResultMatchers.jsonPath("$.lastName").value(expectedTeacherDto.getLastName()))
@@ -67,11 +65,32 @@ public class TeacherControllerTest {
 
     }
 
+    @Test
+    @DisplayName("Should answer not modified until a teacher is added")
+    void giveETag_thenFindAllTeachers_shouldReturnNotModifiedStatus() throws Exception {
+
+        teacherRepository.save(new Teacher().setFirstName("valery").setLastName("Dupont"));
+
+        String eTag = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/teacher"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/teacher").header("If-None-Match", eTag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/teacher").header("If-None-Match", eTag))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(2));
+
+    }
+
     @Test
     @DisplayName("Should return a not found status")
     void giveIdTeacher_thenFindTeacherById_shouldReturnNotFoundStatus() throws Exception {
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/teacher/{id}", id))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/teacher/{id}", id))
                 .andExpect(MockMvcResultMatchers.status().isNotFound());
 
     }
@@ -79,9 +98,9 @@ public class TeacherControllerTest {
     @DisplayName("Should return a bad request status")
     void giveIdTeacher_thenFindTeacherById_shouldReturnBadRequestStatus() throws Exception {
 
-        teacherController.findById("a");
+        teacherController.findById("a", null);
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/teacher/{id}", "a"))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/teacher/{id}", "a"))
                 .andExpect(MockMvcResultMatchers.status().isBadRequest());
 
     }
@@ -103,7 +122,7 @@ public class TeacherControllerTest {
         List.of(this.teacherMapper.toDto(teacher1));
         List.of(this.teacherMapper.toDto(teacher2));
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/teacher"))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/teacher"))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(MockMvcResultMatchers.jsonPath("$.[0].firstName").value("Mickey"))
@@ -2,11 +2,16 @@ package com.openclassrooms.starterjwt.controllers;
 
 import com.openclassrooms.starterjwt.dto.UserDto;
 import com.openclassrooms.starterjwt.mapper.UserMapper;
+import com.jayway.jsonpath.JsonPath;
+import com.openclassrooms.starterjwt.models.Session;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.payload.request.LoginRequest;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
 import com.openclassrooms.starterjwt.security.jwt.JwtUtils;
 import com.openclassrooms.starterjwt.services.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -18,13 +23,19 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
+import javax.persistence.EntityManagerFactory;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -36,9 +47,6 @@ public class UserControllerTest {
     @Autowired
     private UserController userController;
 
-    @Autowired
-    private AuthController authController;
-
     @Autowired
     private AuthenticationManager authenticationManager;
 
@@ -57,15 +65,18 @@ public class UserControllerTest {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     private final String id = "10";
 
     private MockMvc mockMvc;
 
     @BeforeEach
     void setUp(){
-        authController = new AuthController(authenticationManager, passwordEncoder, jwtUtils, userRepository);
-        userService = new UserService(userRepository);
-        userController = new UserController(userService, userMapper);
         mockMvc = MockMvcBuilders.standaloneSetup(userController).build();
     }
 
@@ -83,7 +94,7 @@ public class UserControllerTest {
 
         User savedUSer = userRepository.save(user);
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/user/{id}", savedUSer.getId()))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/user/{id}", savedUSer.getId()))
                 .andExpect(MockMvcResultMatchers.status().isOk())
                 .andExpect(MockMvcResultMatchers.content().contentType("application/json"))
                 .andExpect(MockMvcResultMatchers.jsonPath("$.email").value(savedUSer.getEmail()))
@@ -96,7 +107,7 @@ public class UserControllerTest {
     @DisplayName("Should not found user")
     void giveIdUser_thenFindUserById_shouldNotFoundUser() throws Exception {
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/user/{id}", id))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/user/{id}", id))
                 .andExpect(MockMvcResultMatchers.status().isNotFound());
 
     }
@@ -104,7 +115,7 @@ public class UserControllerTest {
     @DisplayName("Should return a not found status")
     void giveIdUser_thenFindUserById_shouldReturnANotFoundStatus() throws Exception {
 
-        mockMvc.perform(MockMvcRequestBuilders.get("/api/user/{id}", id))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/user/{id}", id))
                 .andExpect(MockMvcResultMatchers.status().isNotFound());
 
     }
@@ -121,11 +132,13 @@ public class UserControllerTest {
         loginRequest.setEmail("test@test.com");
         loginRequest.setPassword("1234");
 
-        authController.authenticateUser(loginRequest);
+        // The controllers run on the request executor, which carries over the caller's security context.
+        SecurityContextHolder.getContext().setAuthentication(authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword())));
 
         Long userId = newUser.getId();
 
-        mockMvc.perform(MockMvcRequestBuilders.delete("/api/user/{id}", userId))
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.delete("/api/user/{id}", userId))
                 .andExpect(MockMvcResultMatchers.status().isOk());
 
         assertFalse(userRepository.existsById(userId));
@@ -146,9 +159,11 @@ public class UserControllerTest {
         loginRequest.setEmail("test@test.com");
         loginRequest.setPassword("1234");
 
-        authController.authenticateUser(loginRequest);
+        // The controllers run on the request executor, which carries over the caller's security context.
+        SecurityContextHolder.getContext().setAuthentication(authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken(loginRequest.getEmail(), loginRequest.getPassword())));
 
-        ResponseEntity<?> responseEntity = userController.save(newUser.getId().toString());
+        ResponseEntity<?> responseEntity = userController.save(newUser.getId().toString()).join();
 
         assertEquals(HttpStatus.UNAUTHORIZED, responseEntity.getStatusCode());
     }
@@ -157,7 +172,7 @@ public class UserControllerTest {
     @DisplayName("Should NumberFormatException")
     void giveIdUser_shouldNumberFormatException() throws Exception {
 
-        ResponseEntity<?> responseEntity = userController.save("a");
+        ResponseEntity<?> responseEntity = userController.save("a").join();
 
         assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
     }
@@ -166,13 +181,69 @@ public class UserControllerTest {
     @DisplayName("Should return a bad request status")
     void giveIdUser_thenFindUserById_shouldReturnBadRequestStatus() throws Exception {
 
-        ResponseEntity<?> responseEntity = userController.findById("a");
+        ResponseEntity<?> responseEntity = userController.findById("a").join();
 
         assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
     }
 
+    @Test
+    @DisplayName("Should page through the upcoming and past sessions of a user")
+    void giveParticipations_thenFindSessions_shouldReturnUpcomingThenPastSessions() throws Exception {
+
+        User user = userRepository.save(new User("test@test.com", "Wayne", "Bruce", "1234", false));
+        long now = System.currentTimeMillis();
+        List<Session> sessions = new ArrayList<>();
+        for (int i = -2; i <= 3; i++) {
+            Session session = new Session();
+            session.setName("Yoga " + i);
+            session.setDate(new Date(now + i * 86_400_000L + 3_600_000L));
+            session.setDescription("Description session");
+            // The user does not participate in the last session
+            session.setUsers(i < 3 ? List.of(user) : new ArrayList<>());
+            sessions.add(session);
+        }
+        sessionRepository.saveAll(sessions);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        String body = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/user/{id}/sessions", user.getId())
+                        .param("size", "2"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions[0].name").value("Yoga 0"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions[0].users[0]").value(user.getId()))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions[1].name").value("Yoga 1"))
+                .andReturn().getResponse().getContentAsString();
+
+        // The user's sessions, then their participant ids
+        assertEquals(2, statistics.getPrepareStatementCount());
+
+        String nextCursor = JsonPath.read(body, "$.nextCursor");
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/user/{id}/sessions", user.getId())
+                        .param("size", "2")
+                        .param("cursor", nextCursor))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions.length()").value(1))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions[0].name").value("Yoga 2"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.nextCursor").doesNotExist());
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/user/{id}/sessions", user.getId())
+                        .param("when", "past"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions.length()").value(2))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions[0].name").value("Yoga -1"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$.sessions[1].name").value("Yoga -2"));
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/user/{id}/sessions", user.getId())
+                        .param("when", "yesterday"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest());
+    }
+
     @AfterEach
     public void cleanup() {
+        sessionRepository.deleteAll();
         userRepository.deleteAll();
+        SecurityContextHolder.clearContext();
     }
 }
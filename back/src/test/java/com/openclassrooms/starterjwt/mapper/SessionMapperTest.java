@@ -2,12 +2,22 @@ package com.openclassrooms.starterjwt.mapper;
 
 import com.openclassrooms.starterjwt.dto.SessionDto;
 import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -17,6 +27,15 @@ public class SessionMapperTest {
     @Autowired
     private SessionMapper sessionMapper;
 
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
     public void testToEntity() {
 
@@ -53,5 +72,45 @@ public class SessionMapperTest {
         assertEquals(dtoList.size(), result.size());
     }
 
+    @Test
+    public void testToEntityWithManyParticipants() {
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            users.add(new User("mapper" + i + "@test.com", "Doe", "John", "1234", false));
+        }
+        List<Long> userIds = userRepository.saveAll(users).stream().map(User::getId).collect(Collectors.toList());
+
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setTeacher_id(teacher.getId());
+        sessionDto.setUsers(userIds);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Session session = sessionMapper.toEntity(sessionDto);
+
+        // One statement for the teacher, one for every participant
+        assertEquals(2, statistics.getPrepareStatementCount());
+        assertEquals(teacher.getId(), session.getTeacher().getId());
+        assertEquals(userIds, session.getUsers().stream().map(User::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testToEntityIgnoresTimestamps() {
+        SessionDto sessionDto = new SessionDto();
+        sessionDto.setCreatedAt(LocalDateTime.of(2020, 1, 1, 0, 0));
+        sessionDto.setUpdatedAt(LocalDateTime.of(2030, 1, 1, 0, 0));
+
+        Session session = sessionMapper.toEntity(sessionDto);
 
+        assertNull(session.getCreatedAt());
+        assertNull(session.getUpdatedAt());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
 }
@@ -0,0 +1,74 @@
+package com.openclassrooms.starterjwt.repository;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Query plans of the hot queries against the schema created by the Flyway migrations.
+ */
+@SpringBootTest
+public class SchemaIndexTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private String explain(String sql) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class).toUpperCase();
+    }
+
+    @Test
+    @DisplayName("Should seek sessions by date through idx_sessions_date")
+    public void giveCursor_thenFindSessionsAfter_shouldUseDateIndex() {
+        String plan = explain("SELECT id FROM SESSIONS WHERE date > CURRENT_TIMESTAMP ORDER BY date, id");
+
+        assertTrue(plan.contains("IDX_SESSIONS_DATE"), plan);
+    }
+
+    @Test
+    @DisplayName("Should find the participants of a session through the primary key")
+    public void giveSessionId_thenFindParticipants_shouldUsePrimaryKey() {
+        String plan = explain("SELECT user_id FROM PARTICIPATE WHERE session_id = 1");
+
+        assertTrue(plan.contains("PRIMARY_KEY"), plan);
+    }
+
+    @Test
+    @DisplayName("Should find the sessions of a user through idx_participate_user")
+    public void giveUserId_thenFindSessions_shouldUseUserIndex() {
+        String plan = explain("SELECT session_id FROM PARTICIPATE WHERE user_id = 1");
+
+        assertTrue(plan.contains("IDX_PARTICIPATE_USER"), plan);
+    }
+
+    @Test
+    @DisplayName("Should find the sessions of a teacher through idx_sessions_teacher_date")
+    public void giveTeacherId_thenFindSessions_shouldUseTeacherIndex() {
+        String plan = explain("SELECT id FROM SESSIONS WHERE teacher_id = 1");
+
+        assertTrue(plan.contains("IDX_SESSIONS_TEACHER_DATE"), plan);
+    }
+
+    @Test
+    @DisplayName("Should search a teacher's calendar window through idx_sessions_teacher_date")
+    public void giveTeacherAndWindow_thenSearchSessions_shouldUseTeacherDateIndex() {
+        String plan = explain("SELECT id FROM SESSIONS WHERE teacher_id = 1"
+                + " AND date >= CURRENT_TIMESTAMP AND date < DATEADD('DAY', 7, CURRENT_TIMESTAMP) ORDER BY date, id");
+
+        assertTrue(plan.contains("IDX_SESSIONS_TEACHER_DATE"), plan);
+        assertTrue(plan.contains("DATE >="), plan);
+    }
+
+    @Test
+    @DisplayName("Should search a calendar window through idx_sessions_date")
+    public void giveWindow_thenSearchSessions_shouldUseDateIndex() {
+        String plan = explain("SELECT id FROM SESSIONS"
+                + " WHERE date >= CURRENT_TIMESTAMP AND date < DATEADD('DAY', 7, CURRENT_TIMESTAMP) ORDER BY date, id");
+
+        assertTrue(plan.contains("IDX_SESSIONS_DATE"), plan);
+    }
+}
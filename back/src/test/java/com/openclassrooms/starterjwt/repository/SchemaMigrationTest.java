@@ -0,0 +1,128 @@
+package com.openclassrooms.starterjwt.repository;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Migrations of the MySQL schema, run on H2 in MySQL mode: on top of a database created with the original
+ * ressources/sql/script.sql and holding data, then on an empty database. The H2 migrations the other tests
+ * run on must give the same columns.
+ */
+public class SchemaMigrationTest {
+    private static final String ORIGINAL_SCRIPT = "../ressources/sql/script.sql";
+
+    private SingleConnectionDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new SingleConnectionDataSource(
+                "jdbc:h2:mem:migration;MODE=MySQL;CASE_INSENSITIVE_IDENTIFIERS=TRUE", "user", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        dataSource.destroy();
+    }
+
+    private MigrateResult migrate() {
+        return migrate(dataSource, "mysql");
+    }
+
+    private static MigrateResult migrate(DataSource dataSource, String vendor) {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration/" + vendor)
+                .baselineOnMigrate(true)
+                .load()
+                .migrate();
+    }
+
+    @Test
+    @DisplayName("Should migrate a database created with the original script, counting its participations and allocating ids past its sessions")
+    public void giveOriginalSchema_thenMigrate_shouldApplyEveryMigration() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new FileSystemResource(ORIGINAL_SCRIPT));
+        }
+        jdbcTemplate.update("INSERT INTO SESSIONS (id, name, date, teacher_id) VALUES (7, 'Yoga', CURRENT_TIMESTAMP, 1)");
+        jdbcTemplate.update("INSERT INTO SESSIONS (id, name, date, teacher_id) VALUES (12, 'Pilates', CURRENT_TIMESTAMP, 2)");
+        jdbcTemplate.update("INSERT INTO PARTICIPATE (user_id, session_id) VALUES (1, 7), (1, 7), (1, 12)");
+
+        MigrateResult result = migrate();
+
+        assertTrue(result.success);
+        assertEquals("1", result.initialSchemaVersion);
+        assertEquals(6, result.migrationsExecuted);
+        assertEquals(List.of(1, 1), jdbcTemplate.queryForList("SELECT seats_taken FROM SESSIONS ORDER BY id", Integer.class));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM PARTICIPATE", Integer.class));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> jdbcTemplate.update("INSERT INTO PARTICIPATE (user_id, session_id) VALUES (1, 12)"));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM REFRESH_TOKENS", Integer.class));
+        assertEquals(13, jdbcTemplate.queryForObject("SELECT next_val FROM session_seq", Long.class));
+        assertEquals(List.of(0), jdbcTemplate.queryForList("SELECT token_version FROM USERS ORDER BY id", Integer.class));
+    }
+
+    @Test
+    @DisplayName("Should create the schema and its data on an empty database")
+    public void giveEmptyDatabase_thenMigrate_shouldCreateSchema() {
+        MigrateResult result = migrate();
+
+        assertTrue(result.success);
+        assertEquals(7, result.migrationsExecuted);
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM TEACHERS", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SESSIONS", Integer.class));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT next_val FROM session_seq", Long.class));
+    }
+
+    @Test
+    @DisplayName("Should give the same columns with the H2 migrations as with the MySQL ones")
+    public void giveH2Migrations_thenMigrate_shouldMatchMySqlColumns() {
+        SingleConnectionDataSource h2DataSource = new SingleConnectionDataSource("jdbc:h2:mem:migration-h2", "user", "", true);
+        try {
+            migrate();
+            migrate(h2DataSource, "h2");
+
+            assertEquals(columns(jdbcTemplate), columns(new JdbcTemplate(h2DataSource)));
+            assertEquals(constraints(jdbcTemplate), constraints(new JdbcTemplate(h2DataSource)));
+        } finally {
+            new JdbcTemplate(h2DataSource).execute("DROP ALL OBJECTS");
+            h2DataSource.destroy();
+        }
+    }
+
+    // The session sequence is a table on MySQL and a native sequence on H2; the auto-increment sequences are
+    // named at random.
+    private static List<String> columns(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForList("SELECT UPPER(TABLE_NAME) || '.' || UPPER(COLUMN_NAME) || ' ' || TYPE_NAME"
+                + " || '(' || CHARACTER_MAXIMUM_LENGTH || ') ' || IS_NULLABLE || ' '"
+                + " || REGEXP_REPLACE(COALESCE(COLUMN_DEFAULT, ''), 'SYSTEM_SEQUENCE_[0-9A-F_]+', 'SYSTEM_SEQUENCE')"
+                + " FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = 'PUBLIC'"
+                + " AND UPPER(TABLE_NAME) NOT IN ('FLYWAY_SCHEMA_HISTORY', 'SESSION_SEQ') ORDER BY 1", String.class);
+    }
+
+    // The MySQL baseline leaves its constraints unnamed
+    private static List<String> constraints(JdbcTemplate jdbcTemplate) {
+        return jdbcTemplate.queryForList("SELECT UPPER(TABLE_NAME) || ' ' || CONSTRAINT_TYPE || ' (' || UPPER(COLUMN_LIST) || ')'"
+                + " FROM INFORMATION_SCHEMA.CONSTRAINTS WHERE TABLE_SCHEMA = 'PUBLIC'"
+                + " AND UPPER(TABLE_NAME) NOT IN ('FLYWAY_SCHEMA_HISTORY', 'SESSION_SEQ') ORDER BY 1", String.class);
+    }
+}
@@ -0,0 +1,70 @@
+package com.openclassrooms.starterjwt.security;
+
+import com.openclassrooms.starterjwt.controllers.AsyncDispatch;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+
+/**
+ * Requests through the application's security filter chain, which the standalone controller tests skip.
+ */
+@SpringBootTest
+public class WebSecurityConfigTest {
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+    }
+
+    @Test
+    @DisplayName("Should let a registration without CSRF token reach the controller, without creating an HTTP session")
+    public void giveNoCsrfToken_thenRegister_shouldReachController() throws Exception {
+        userRepository.save(new User("taken@studio.com", "Doe", "John", "password", false));
+
+        MvcResult result = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\":\"taken@studio.com\",\"firstName\":\"John\",\"lastName\":\"Doe\",\"password\":\"password\"}"))
+                .andExpect(MockMvcResultMatchers.status().isBadRequest())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.message").value("Error: Email is already taken!"))
+                .andReturn();
+
+        assertNull(result.getRequest().getSession(false));
+    }
+
+    @Test
+    @DisplayName("Should answer 401 to a write without token nor CSRF token")
+    public void giveNoToken_thenCreateSession_shouldReturnUnauthorized() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/api/session")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(MockMvcResultMatchers.status().isUnauthorized());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        userRepository.deleteAll();
+    }
+}
@@ -0,0 +1,133 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class AuthTokenFilterTest {
+
+    @Spy
+    private JwtUtils jwtUtils = new JwtUtils("openclassrooms", 60_000);
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
+    @InjectMocks
+    private AuthTokenFilter authTokenFilter;
+
+    private final UserDetailsImpl userDetails = UserDetailsImpl.builder()
+            .id(1L).username("yoga@studio.com").firstName("Yoga").lastName("Studio").admin(false).build();
+
+    @BeforeEach
+    public void setup() {
+        ReflectionTestUtils.setField(authTokenFilter, "stateless", true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private Authentication filter(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        authTokenFilter.doFilterInternal(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    @Test
+    @DisplayName("Should authenticate from the token claims without loading the user")
+    public void giveStatelessToken_thenFilter_shouldAuthenticateFromClaims() throws Exception {
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null), 0);
+        when(tokenRevocationRegistry.isValid(1L, 0)).thenReturn(true);
+
+        Authentication authentication = filter(token);
+
+        UserDetailsImpl principal = (UserDetailsImpl) authentication.getPrincipal();
+        assertEquals(userDetails, principal);
+        assertEquals("yoga@studio.com", principal.getUsername());
+        assertFalse(principal.getAdmin());
+        Mockito.verifyNoInteractions(userDetailsCache);
+    }
+
+    @Test
+    @DisplayName("Should not authenticate a revoked token")
+    public void giveRevokedToken_thenFilter_shouldNotAuthenticate() throws Exception {
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null), 0);
+        when(tokenRevocationRegistry.isValid(1L, 0)).thenReturn(false);
+
+        assertNull(filter(token));
+        Mockito.verifyNoInteractions(userDetailsCache);
+    }
+
+    @Test
+    @DisplayName("Should load the user when stateless mode is disabled")
+    public void giveToken_thenFilterStatefully_shouldLoadUser() throws Exception {
+        ReflectionTestUtils.setField(authTokenFilter, "stateless", false);
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null), 0);
+        when(tokenRevocationRegistry.isValid(1L, 0)).thenReturn(true);
+        when(userDetailsCache.get("yoga@studio.com")).thenReturn(userDetails);
+
+        assertSame(userDetails, filter(token).getPrincipal());
+    }
+
+    @Test
+    @DisplayName("Should skip the token of public and preflight requests")
+    public void givePublicOrPreflightRequest_thenFilter_shouldSkipToken() throws Exception {
+        authTokenFilter.setPublicPaths("/api/auth/**");
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null), 0);
+
+        for (MockHttpServletRequest request : new MockHttpServletRequest[] {
+                new MockHttpServletRequest("POST", "/api/auth/login"),
+                new MockHttpServletRequest("OPTIONS", "/api/session")}) {
+            request.setServletPath(request.getRequestURI());
+            request.addHeader("Authorization", "Bearer " + token);
+            MockFilterChain filterChain = new MockFilterChain();
+
+            authTokenFilter.doFilter(request, new MockHttpServletResponse(), filterChain);
+
+            assertNotNull(filterChain.getRequest());
+            assertNull(SecurityContextHolder.getContext().getAuthentication());
+        }
+        Mockito.verify(jwtUtils, Mockito.never()).getValidatedClaims(token);
+        Mockito.verifyNoInteractions(tokenRevocationRegistry, userDetailsCache);
+    }
+
+    @Test
+    @DisplayName("Should still authenticate the requests to protected paths")
+    public void giveProtectedRequest_thenFilter_shouldAuthenticate() throws Exception {
+        authTokenFilter.setPublicPaths("/api/auth/**");
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null), 0);
+        when(tokenRevocationRegistry.isValid(1L, 0)).thenReturn(true);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/session");
+        request.setServletPath("/api/session");
+        request.addHeader("Authorization", "Bearer " + token);
+
+        authTokenFilter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals(userDetails, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+    }
+}
@@ -0,0 +1,125 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.security.services.UserDetailsImpl;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JwtUtilsTest {
+    private static final String SECRET = "openclassrooms";
+
+    private JwtUtils jwtUtils;
+
+    @BeforeEach
+    public void setUp() {
+        jwtUtils = new JwtUtils(SECRET, 60_000);
+    }
+
+    private String generateToken(String email) {
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username(email).build();
+        return jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null));
+    }
+
+    @Test
+    @DisplayName("Should return the claims of a valid token")
+    public void giveValidToken_thenGetValidatedClaims_shouldReturnClaims() {
+        String token = generateToken("yoga@studio.com");
+
+        Claims claims = jwtUtils.getValidatedClaims(token);
+
+        assertNotNull(claims);
+        assertEquals("yoga@studio.com", claims.getSubject());
+        assertTrue(claims.getExpiration().after(new Date()));
+        assertTrue(jwtUtils.validateJwtToken(token));
+        assertEquals("yoga@studio.com", jwtUtils.getUserNameFromJwtToken(token));
+    }
+
+    @Test
+    @DisplayName("Should rebuild the principal from the claims of the token")
+    public void giveToken_thenGetUserDetailsFromClaims_shouldReturnPrincipal() {
+        UserDetailsImpl userDetails = UserDetailsImpl.builder()
+                .id(42L).username("yoga@studio.com").firstName("Admin").lastName("Admin").admin(true).build();
+        String token = jwtUtils.generateJwtToken(new UsernamePasswordAuthenticationToken(userDetails, null), 3);
+
+        Claims claims = jwtUtils.getValidatedClaims(token);
+        UserDetailsImpl principal = jwtUtils.getUserDetailsFromClaims(claims);
+
+        assertEquals(42L, principal.getId());
+        assertEquals("yoga@studio.com", principal.getUsername());
+        assertEquals("Admin", principal.getFirstName());
+        assertEquals("Admin", principal.getLastName());
+        assertTrue(principal.getAdmin());
+        assertEquals(3, jwtUtils.getTokenVersion(claims));
+    }
+
+    @Test
+    @DisplayName("Should accept a token signed with the legacy string secret")
+    public void giveLegacyToken_thenGetValidatedClaims_shouldReturnClaims() {
+        String token = Jwts.builder()
+                .setSubject("yoga@studio.com")
+                .setExpiration(new Date(System.currentTimeMillis() + 60_000))
+                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .compact();
+
+        Claims claims = jwtUtils.getValidatedClaims(token);
+        assertEquals("yoga@studio.com", claims.getSubject());
+        assertNull(jwtUtils.getUserDetailsFromClaims(claims));
+    }
+
+    @Test
+    @DisplayName("Should reject a token signed with another secret")
+    public void giveForeignToken_thenGetValidatedClaims_shouldReturnNull() {
+        String token = new JwtUtils("anothersecret", 60_000)
+                .generateJwtToken(new UsernamePasswordAuthenticationToken(UserDetailsImpl.builder().username("a@b.com").build(), null));
+
+        assertNull(jwtUtils.getValidatedClaims(token));
+    }
+
+    @Test
+    @DisplayName("Should reject an expired token")
+    public void giveExpiredToken_thenGetValidatedClaims_shouldReturnNull() {
+        JwtUtils expiredJwtUtils = new JwtUtils(SECRET, -1_000);
+        String token = expiredJwtUtils.generateJwtToken(
+                new UsernamePasswordAuthenticationToken(UserDetailsImpl.builder().username("a@b.com").build(), null));
+
+        assertNull(jwtUtils.getValidatedClaims(token));
+    }
+
+    @Test
+    @DisplayName("Should reject malformed and empty tokens")
+    public void giveMalformedToken_thenGetValidatedClaims_shouldReturnNull() {
+        assertNull(jwtUtils.getValidatedClaims("not.a.token"));
+        assertNull(jwtUtils.getValidatedClaims(""));
+        assertFalse(jwtUtils.validateJwtToken(""));
+    }
+
+    @Test
+    @DisplayName("Should count the validations by outcome")
+    public void giveTokens_thenGetValidatedClaims_shouldCountOutcomes() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        jwtUtils.bindTo(registry);
+        String expiredToken = new JwtUtils(SECRET, -1_000).generateJwtToken(
+                new UsernamePasswordAuthenticationToken(UserDetailsImpl.builder().username("a@b.com").build(), null));
+
+        jwtUtils.getValidatedClaims(generateToken("yoga@studio.com"));
+        jwtUtils.getValidatedClaims(generateToken("yoga@studio.com"));
+        jwtUtils.getValidatedClaims(expiredToken);
+        jwtUtils.getValidatedClaims("not.a.token");
+        jwtUtils.getValidatedClaims("");
+
+        assertEquals(2, registry.get("jwt.validation").tag("outcome", "valid").functionCounter().count());
+        assertEquals(1, registry.get("jwt.validation").tag("outcome", "expired").functionCounter().count());
+        assertEquals(1, registry.get("jwt.validation").tag("outcome", "malformed").functionCounter().count());
+        assertEquals(1, registry.get("jwt.validation").tag("outcome", "empty").functionCounter().count());
+        assertEquals(0, registry.get("jwt.validation").tag("outcome", "invalid_signature").functionCounter().count());
+    }
+}
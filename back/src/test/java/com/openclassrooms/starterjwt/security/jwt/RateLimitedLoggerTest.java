@@ -0,0 +1,60 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RateLimitedLoggerTest {
+
+    @Mock
+    private Logger logger;
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private RateLimitedLogger rateLimitedLogger;
+
+    @BeforeEach
+    public void setUp() {
+        rateLimitedLogger = new RateLimitedLogger(logger, Duration.ofSeconds(10), clock::get);
+    }
+
+    @Test
+    @DisplayName("Should log one line per interval and report the suppressed ones with the next")
+    public void giveBurst_thenWarn_shouldLogOncePerInterval() {
+        when(logger.isWarnEnabled()).thenReturn(true);
+
+        rateLimitedLogger.warn("JWT token rejected: outcome={} reason={}", "expired", "a");
+        rateLimitedLogger.warn("JWT token rejected: outcome={} reason={}", "expired", "b");
+        rateLimitedLogger.warn("JWT token rejected: outcome={} reason={}", "expired", "c");
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        rateLimitedLogger.warn("JWT token rejected: outcome={} reason={}", "expired", "d");
+
+        Mockito.verify(logger).warn("JWT token rejected: outcome={} reason={} suppressed={}", "expired", "a", 0L);
+        Mockito.verify(logger).warn("JWT token rejected: outcome={} reason={} suppressed={}", "expired", "d", 2L);
+        Mockito.verify(logger, Mockito.times(2)).warn(anyString(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should not log when the level is disabled")
+    public void giveDisabledLevel_thenError_shouldNotLog() {
+        when(logger.isErrorEnabled()).thenReturn(false);
+
+        rateLimitedLogger.error("Cannot set user authentication", new IllegalStateException());
+
+        Mockito.verify(logger).isErrorEnabled();
+        Mockito.verifyNoMoreInteractions(logger);
+    }
+}
@@ -0,0 +1,70 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.models.RefreshToken;
+import com.openclassrooms.starterjwt.repository.RefreshTokenRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RefreshTokenStoreTest {
+
+    @Mock
+    private RefreshTokenRepository refreshTokenRepository;
+
+    private RefreshTokenStore refreshTokenStore;
+
+    @BeforeEach
+    public void setUp() {
+        refreshTokenStore = new RefreshTokenStore(refreshTokenRepository, 60_000);
+    }
+
+    @Test
+    @DisplayName("Should store the hash of the token, never the token itself")
+    public void giveUser_thenIssue_shouldStoreHash() {
+        ArgumentCaptor<RefreshToken> stored = ArgumentCaptor.forClass(RefreshToken.class);
+
+        String token = refreshTokenStore.issue(1L);
+
+        Mockito.verify(refreshTokenRepository).save(stored.capture());
+        assertEquals(43, token.length());
+        assertEquals(RefreshTokenStore.hash(token), stored.getValue().getTokenHash());
+        assertNotEquals(token, stored.getValue().getTokenHash());
+        assertEquals(1L, stored.getValue().getUserId());
+        assertTrue(stored.getValue().getExpiresAt().isAfter(LocalDateTime.now()));
+        assertNotEquals(token, refreshTokenStore.issue(1L));
+    }
+
+    @Test
+    @DisplayName("Should give the user of a token only while its deletion succeeds")
+    public void giveToken_thenConsume_shouldReturnUserOnce() {
+        String tokenHash = RefreshTokenStore.hash("token");
+        when(refreshTokenRepository.findById(tokenHash))
+                .thenReturn(Optional.of(RefreshToken.builder().tokenHash(tokenHash).userId(1L).build()));
+        when(refreshTokenRepository.deleteUnexpired(eq(tokenHash), any(LocalDateTime.class))).thenReturn(1, 0);
+
+        assertEquals(1L, refreshTokenStore.consume("token"));
+        assertNull(refreshTokenStore.consume("token"));
+    }
+
+    @Test
+    @DisplayName("Should purge the expired tokens")
+    public void givePurge_thenPurgeExpired_shouldDeleteExpired() {
+        refreshTokenStore.purgeExpired();
+
+        Mockito.verify(refreshTokenRepository).deleteExpired(any(LocalDateTime.class));
+    }
+}
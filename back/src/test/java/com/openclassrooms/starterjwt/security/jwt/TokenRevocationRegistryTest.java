@@ -0,0 +1,87 @@
+package com.openclassrooms.starterjwt.security.jwt;
+
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenRevocationRegistryTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private final AtomicLong ticker = new AtomicLong();
+
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
+    @BeforeEach
+    public void setup() {
+        tokenRevocationRegistry = new TokenRevocationRegistry(userRepository, 1_000, 30_000, ticker::get);
+    }
+
+    @Test
+    @DisplayName("Should check an existing user once per time to live and accept its current token version")
+    public void giveExistingUser_thenIsValid_shouldAcceptCurrentVersion() {
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.of(0));
+
+        assertTrue(tokenRevocationRegistry.isValid(1L, 0));
+        assertTrue(tokenRevocationRegistry.isValid(1L, 0));
+        assertFalse(tokenRevocationRegistry.isValid(1L, 1));
+
+        Mockito.verify(userRepository, Mockito.times(1)).findTokenVersionById(1L);
+    }
+
+    @Test
+    @DisplayName("Should reject the tokens of an unknown user")
+    public void giveUnknownUser_thenIsValid_shouldReject() {
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.empty());
+
+        assertFalse(tokenRevocationRegistry.isValid(1L, 0));
+        assertTrue(tokenRevocationRegistry.isRevoked(1L));
+    }
+
+    @Test
+    @DisplayName("Should reject the tokens of a deleted user at once")
+    public void giveDeletedUser_thenIsValid_shouldReject() {
+        tokenRevocationRegistry.revoke(1L);
+
+        assertFalse(tokenRevocationRegistry.isValid(1L, 0));
+        assertTrue(tokenRevocationRegistry.isRevoked(1L));
+        Mockito.verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    @DisplayName("Should reject the tokens of an older version once the cached version expired")
+    public void giveIncrementedVersion_thenIsValid_shouldRejectOlderTokens() {
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.of(0), Optional.of(1));
+
+        assertTrue(tokenRevocationRegistry.isValid(1L, 0));
+
+        ticker.addAndGet(TimeUnit.SECONDS.toNanos(31));
+
+        assertFalse(tokenRevocationRegistry.isValid(1L, 0));
+        assertTrue(tokenRevocationRegistry.isValid(1L, 1));
+    }
+
+    @Test
+    @DisplayName("Should issue tokens with the version stored in the database, not the cached one")
+    public void giveCachedVersion_thenIssuedVersion_shouldReadDatabase() {
+        when(userRepository.findTokenVersionById(1L)).thenReturn(Optional.of(0), Optional.of(1));
+
+        assertEquals(0, tokenRevocationRegistry.currentVersion(1L));
+        assertEquals(1, tokenRevocationRegistry.issuedVersion(1L));
+        assertTrue(tokenRevocationRegistry.isValid(1L, 1));
+    }
+}
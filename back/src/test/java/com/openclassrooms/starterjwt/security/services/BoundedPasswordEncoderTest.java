@@ -0,0 +1,82 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import com.openclassrooms.starterjwt.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoundedPasswordEncoderTest {
+
+    private BoundedPasswordEncoder boundedPasswordEncoder;
+
+    @AfterEach
+    public void cleanup() {
+        boundedPasswordEncoder.destroy();
+    }
+
+    @Test
+    @DisplayName("Should hash and verify with the delegate encoder")
+    public void givePassword_thenEncode_shouldMatch() {
+        boundedPasswordEncoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(5), 1, 1, 1);
+
+        String encoded = boundedPasswordEncoder.encode("1234");
+
+        assertTrue(boundedPasswordEncoder.matches("1234", encoded));
+        assertFalse(boundedPasswordEncoder.matches("4321", encoded));
+        assertTrue(boundedPasswordEncoder.upgradeEncoding(new BCryptPasswordEncoder(4).encode("1234")));
+        assertFalse(boundedPasswordEncoder.upgradeEncoding(encoded));
+    }
+
+    @Test
+    @DisplayName("Should reject with 503 and Retry-After when the pool and its queue are full")
+    public void giveSaturatedPool_thenEncode_shouldThrowServiceUnavailable() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PasswordEncoder blockingEncoder = new BCryptPasswordEncoder(4) {
+            @Override
+            public String encode(CharSequence rawPassword) {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.encode(rawPassword);
+            }
+        };
+        boundedPasswordEncoder = new BoundedPasswordEncoder(blockingEncoder, 1, 1, 7);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        boundedPasswordEncoder.bindTo(registry);
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> boundedPasswordEncoder.encode("1234"));
+        started.await();
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> boundedPasswordEncoder.encode("1234"));
+        while (registry.get("executor.queued").tag("name", "passwordHashing").gauge().value() < 1) {
+            Thread.onSpinWait();
+        }
+
+        ServiceUnavailableException exception = assertThrows(ServiceUnavailableException.class,
+                () -> boundedPasswordEncoder.matches("1234", "hash"));
+        assertEquals("7", exception.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertEquals(1.0, registry.get("executor.rejected").tag("name", "passwordHashing").functionCounter().count());
+
+        release.countDown();
+        String first = running.join();
+        String second = queued.join();
+        assertTrue(boundedPasswordEncoder.matches("1234", first));
+        assertTrue(boundedPasswordEncoder.matches("1234", second));
+    }
+}
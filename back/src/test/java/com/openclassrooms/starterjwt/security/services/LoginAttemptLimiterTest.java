@@ -0,0 +1,105 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import com.openclassrooms.starterjwt.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoginAttemptLimiterTest {
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private LoginAttemptLimiter loginAttemptLimiter;
+
+    @BeforeEach
+    public void setUp() {
+        loginAttemptLimiter = new LoginAttemptLimiter(3, 5, 60_000, 1_000, clock::get);
+    }
+
+    @Test
+    @DisplayName("Should reject the attempts beyond the limit of an email, whatever its case")
+    public void giveTooManyAttempts_thenAcquire_shouldRejectEmail() {
+        loginAttemptLimiter.acquire("yoga@studio.com", "10.0.0.1");
+        loginAttemptLimiter.acquire("Yoga@Studio.com", "10.0.0.2");
+        loginAttemptLimiter.acquire("yoga@studio.com", "10.0.0.3");
+
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> loginAttemptLimiter.acquire("YOGA@studio.com", "10.0.0.4"));
+        assertEquals(60, exception.getRetryAfterSeconds());
+        assertEquals("60", exception.getResponseHeaders().getFirst("Retry-After"));
+        loginAttemptLimiter.acquire("other@studio.com", "10.0.0.4");
+    }
+
+    @Test
+    @DisplayName("Should reject the attempts beyond the limit of an address, whatever the emails")
+    public void giveTooManyAttempts_thenAcquire_shouldRejectAddress() {
+        for (int i = 0; i < 5; i++) {
+            loginAttemptLimiter.acquire("user" + i + "@studio.com", "10.0.0.1");
+        }
+
+        assertThrows(TooManyRequestsException.class, () -> loginAttemptLimiter.acquire("user5@studio.com", "10.0.0.1"));
+        loginAttemptLimiter.acquire("user5@studio.com", "10.0.0.2");
+    }
+
+    @Test
+    @DisplayName("Should let the attempts of the previous window decay as the window slides")
+    public void giveSlidingWindow_thenAcquire_shouldDecay() {
+        for (int i = 0; i < 3; i++) {
+            loginAttemptLimiter.acquire("yoga@studio.com", "10.0.0.1");
+        }
+
+        // A third of the next window later, two thirds of the previous attempts still count: 2 < 3
+        clock.set(WINDOW_NANOS + WINDOW_NANOS / 3);
+        loginAttemptLimiter.acquire("yoga@studio.com", "10.0.0.1");
+        assertThrows(TooManyRequestsException.class, () -> loginAttemptLimiter.acquire("yoga@studio.com", "10.0.0.1"));
+
+        // Two windows later nothing is left
+        clock.set(3 * WINDOW_NANOS);
+        for (int i = 0; i < 3; i++) {
+            loginAttemptLimiter.acquire("yoga@studio.com", "10.0.0.1");
+        }
+    }
+
+    @Test
+    @DisplayName("Should count exactly the limit under concurrent attempts and publish the rejections")
+    public void giveConcurrentAttempts_thenAcquire_shouldAcceptLimit() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        loginAttemptLimiter = new LoginAttemptLimiter(100, 1_000, 60_000, 1_000, clock::get);
+        loginAttemptLimiter.bindTo(registry);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger accepted = new AtomicInteger();
+        try {
+            for (int i = 0; i < 400; i++) {
+                executor.execute(() -> {
+                    try {
+                        start.await();
+                        loginAttemptLimiter.acquire("yoga@studio.com", "10.0.0.1");
+                        accepted.incrementAndGet();
+                    } catch (TooManyRequestsException | InterruptedException e) {
+                        // rejected
+                    }
+                });
+            }
+            start.countDown();
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        assertEquals(100, accepted.get());
+        assertEquals(300, registry.get("auth.login.throttled").tag("key", "email").functionCounter().count());
+        assertEquals(0, registry.get("auth.login.throttled").tag("key", "address").functionCounter().count());
+    }
+}
@@ -0,0 +1,69 @@
+package com.openclassrooms.starterjwt.security.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class UserDetailsCacheTest {
+
+    @Mock
+    private UserDetailsServiceImpl userDetailsService;
+
+    private UserDetailsCache userDetailsCache;
+
+    private final String email = "test@test.com";
+
+    @BeforeEach
+    public void setup() {
+        userDetailsCache = new UserDetailsCache(userDetailsService, 100, 60_000);
+    }
+
+    @Test
+    @DisplayName("Should load a user once then serve it from the cache")
+    public void giveEmail_thenGetTwice_shouldLoadUserOnce() {
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username(email).build();
+        when(userDetailsService.loadUserByUsername(email)).thenReturn(userDetails);
+
+        assertSame(userDetails, userDetailsCache.get(email));
+        assertSame(userDetails, userDetailsCache.get(email));
+
+        Mockito.verify(userDetailsService, Mockito.times(1)).loadUserByUsername(email);
+        assertEquals(1, userDetailsCache.stats().hitCount());
+        assertEquals(1, userDetailsCache.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("Should reload a user evicted by id")
+    public void giveCachedUser_thenEvictById_shouldReloadUser() {
+        UserDetailsImpl userDetails = UserDetailsImpl.builder().id(1L).username(email).build();
+        when(userDetailsService.loadUserByUsername(email)).thenReturn(userDetails);
+
+        userDetailsCache.get(email);
+        userDetailsCache.evictById(1L);
+        userDetailsCache.get(email);
+
+        Mockito.verify(userDetailsService, Mockito.times(2)).loadUserByUsername(email);
+    }
+
+    @Test
+    @DisplayName("Should not cache an unknown user")
+    public void giveUnknownEmail_thenGet_shouldThrowUsernameNotFoundException() {
+        when(userDetailsService.loadUserByUsername(email)).thenThrow(new UsernameNotFoundException(email));
+
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsCache.get(email));
+        assertThrows(UsernameNotFoundException.class, () -> userDetailsCache.get(email));
+
+        Mockito.verify(userDetailsService, Mockito.times(2)).loadUserByUsername(email);
+    }
+}
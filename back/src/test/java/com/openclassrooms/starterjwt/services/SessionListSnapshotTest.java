@@ -0,0 +1,131 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openclassrooms.starterjwt.controllers.AsyncDispatch;
+import com.openclassrooms.starterjwt.controllers.SessionController;
+import com.openclassrooms.starterjwt.mapper.SessionMapper;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.Teacher;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "oc.app.sessionListSnapshot=true")
+public class SessionListSnapshotTest {
+
+    @Autowired
+    private SessionController sessionController;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionMapper sessionMapper;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TeacherRepository teacherRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.standaloneSetup(sessionController).build();
+    }
+
+    private Session newSession(String name, Teacher teacher) {
+        Session session = new Session();
+        session.setName(name);
+        session.setDate(new Date());
+        session.setDescription("Description session");
+        session.setTeacher(teacher);
+        return session;
+    }
+
+    private String liveJson() throws Exception {
+        List<Session> sessions = sessionService.findAll();
+        return objectMapper.writeValueAsString(sessionMapper.toDto(sessions, sessionService.findParticipantIds(sessions)));
+    }
+
+    @Test
+    @DisplayName("Should render the same listing as the live query after each mutation")
+    void giveMutations_thenFindAll_shouldMatchLiveListing() throws Exception {
+        Teacher teacher = teacherRepository.save(new Teacher().setFirstName("Margot").setLastName("Delahaye"));
+        User user = userRepository.save(new User("snapshot@example.com", "Doe", "John", "1234", false));
+
+        Session first = sessionService.create(newSession("Yoga", teacher));
+        Session second = sessionService.create(newSession("Zen", teacher));
+        assertEquals(liveJson(), new String(sessionService.findAllRendered().getJson()));
+
+        sessionService.participate(first.getId(), user.getId());
+        assertEquals(liveJson(), new String(sessionService.findAllRendered().getJson()));
+
+        second.setName("Zen updated");
+        sessionService.update(second.getId(), second);
+        sessionService.noLongerParticipate(first.getId(), user.getId());
+        assertEquals(liveJson(), new String(sessionService.findAllRendered().getJson()));
+
+        sessionService.delete(first.getId());
+        assertEquals(liveJson(), new String(sessionService.findAllRendered().getJson()));
+    }
+
+    @Test
+    @DisplayName("Should serve an unchanged listing without any SQL statement")
+    void giveUnchangedListing_thenFindAll_shouldNotQueryTheDatabase() throws Exception {
+        sessionService.create(newSession("Yoga", null));
+
+        String eTag = AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.content().contentType("application/json"))
+                .andExpect(MockMvcResultMatchers.jsonPath("$[0].name").value("Yoga"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session"))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.jsonPath("$.length()").value(1));
+        AsyncDispatch.perform(mockMvc, MockMvcRequestBuilders.get("/api/session").header("If-None-Match", eTag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+
+        assertEquals(0, statistics.getPrepareStatementCount());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        sessionRepository.findAll().forEach(session -> sessionService.delete(session.getId()));
+        userRepository.deleteAll();
+        teacherRepository.deleteAll();
+    }
+}
@@ -0,0 +1,101 @@
+package com.openclassrooms.starterjwt.services;
+
+import com.openclassrooms.starterjwt.exception.ConflictException;
+import com.openclassrooms.starterjwt.models.Session;
+import com.openclassrooms.starterjwt.models.User;
+import com.openclassrooms.starterjwt.repository.SessionRepository;
+import com.openclassrooms.starterjwt.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+public class SessionServiceConcurrencyTest {
+    private static final Logger logger = LoggerFactory.getLogger(SessionServiceConcurrencyTest.class);
+
+    private static final int CAPACITY = 20;
+    private static final int REQUESTS = 300;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private SessionRepository sessionRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    @DisplayName("Should never overbook a session under concurrent participations")
+    void giveConcurrentParticipations_thenParticipate_shouldFillCapacityExactly() throws Exception {
+        Session session = new Session();
+        session.setName("Morning flow");
+        session.setDate(new Date());
+        session.setDescription("Opening rush");
+        session.setCapacity(CAPACITY);
+        Session savedSession = sessionRepository.save(session);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            users.add(new User("user" + i + "@test.com", "Doe", "John", "1234", false));
+        }
+        List<User> savedUsers = userRepository.saveAll(users);
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        List<Future<?>> futures = new ArrayList<>();
+        for (User user : savedUsers) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                try {
+                    sessionService.participate(savedSession.getId(), user.getId());
+                    booked.incrementAndGet();
+                } catch (ConflictException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        long elapsedNanos = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        logger.info("{} concurrent participations in {} ms ({} requests/s)", REQUESTS,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), REQUESTS * 1_000_000_000L / Math.max(elapsedNanos, 1));
+
+        List<Long> participants = sessionService.findParticipantIds(List.of(savedSession)).get(savedSession.getId());
+        assertEquals(CAPACITY, booked.get());
+        assertEquals(REQUESTS - CAPACITY, rejected.get());
+        assertEquals(CAPACITY, participants.size());
+        assertEquals(CAPACITY, sessionRepository.findById(savedSession.getId()).orElseThrow().getSeatsTaken());
+    }
+
+    @AfterEach
+    public void cleanup() {
+        sessionRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+}
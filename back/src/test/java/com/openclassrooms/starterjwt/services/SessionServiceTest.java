@@ -1,11 +1,12 @@
 package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.exception.BadRequestException;
+import com.openclassrooms.starterjwt.exception.ConflictException;
 import com.openclassrooms.starterjwt.exception.NotFoundException;
 import com.openclassrooms.starterjwt.models.Session;
-import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.SessionRepository;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,12 +16,18 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -33,6 +40,9 @@ public class SessionServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private SessionListSnapshot sessionListSnapshot;
+
     @InjectMocks
     private SessionService sessionService;
 
@@ -41,21 +51,35 @@ public class SessionServiceTest {
 
     @BeforeEach
     public void setUp() {
-        sessionService = new SessionService(sessionRepository, userRepository);
+        sessionService = new SessionService(sessionRepository, userRepository, sessionListSnapshot);
     }
 
     @Test
     @DisplayName("Should create a session")
     public void createSession_shouldCreateASession() {
         Session session = new Session();
-        when(sessionRepository.save(session)).thenReturn(session);
+        session.setId(sessionId);
+        when(sessionRepository.saveAndFlush(session)).thenReturn(session);
+        when(sessionRepository.recountSeats(eq(sessionId), any(LocalDateTime.class))).thenReturn(1);
 
         Session newSession = sessionService.create(session);
 
-        Mockito.verify(sessionRepository).save(session);
+        Mockito.verify(sessionRepository).saveAndFlush(session);
         assertEquals(session, newSession);
     }
 
+    @Test
+    @DisplayName("Should reject a session with more participants than its capacity")
+    public void giveParticipantsOverCapacity_thenCreateSession_shouldThrowConflictException() {
+        Session session = new Session();
+        session.setId(sessionId);
+        when(sessionRepository.saveAndFlush(session)).thenReturn(session);
+        when(sessionRepository.recountSeats(eq(sessionId), any(LocalDateTime.class))).thenReturn(0);
+
+        assertThrows(ConflictException.class, () -> sessionService.create(session));
+        Mockito.verify(sessionListSnapshot, Mockito.never()).markDirty(sessionId);
+    }
+
     @Test
     @DisplayName("Should delete a session by Id")
     public void deleteSessionById_shouldDeleteASession() {
@@ -76,6 +100,46 @@ public class SessionServiceTest {
         assertEquals(sessions, allSessions);
     }
 
+    @Test
+    @DisplayName("Should return the first page with a cursor to the next one")
+    public void givePageSize_thenFindFirstPage_shouldReturnPageAndNextCursor() {
+        Session first = new Session().setId(1L).setDate(new Date(1000L));
+        Session second = new Session().setId(2L).setDate(new Date(2000L));
+        Session third = new Session().setId(3L).setDate(new Date(3000L));
+        when(sessionRepository.findAllByOrderByDateAscIdAsc(PageRequest.of(0, 3))).thenReturn(List.of(first, second, third));
+
+        SessionPage page = sessionService.findPage(null, 2);
+
+        assertEquals(List.of(first, second), page.getSessions());
+        assertEquals(SessionCursor.of(second).encode(), page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Should seek after the cursor and return the last page")
+    public void giveCursor_thenFindPage_shouldReturnLastPage() {
+        Session second = new Session().setId(2L).setDate(new Date(2000L));
+        Session third = new Session().setId(3L).setDate(new Date(3000L));
+        String cursor = SessionCursor.of(second).encode();
+        when(sessionRepository.findAllAfter(new Date(2000L), 2L, PageRequest.of(0, 3))).thenReturn(List.of(third));
+
+        SessionPage page = sessionService.findPage(cursor, 2);
+
+        assertEquals(List.of(third), page.getSessions());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    @DisplayName("Should reject an invalid cursor")
+    public void giveInvalidCursor_thenFindPage_shouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () -> sessionService.findPage("not-a-cursor", 2));
+    }
+
+    @Test
+    @DisplayName("Should reject an empty page size")
+    public void giveZeroSize_thenFindPage_shouldThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () -> sessionService.findPage(null, 0));
+    }
+
     @Test
     @DisplayName("Should find session by ID")
     public void getSessionById_shouldGetASession() {
@@ -92,35 +156,72 @@ public class SessionServiceTest {
     @DisplayName("Should update a session")
     public void updateSession_shouldUpdateASession() {
         Session session = new Session();
-        when(sessionRepository.save(session)).thenReturn(session);
+        when(sessionRepository.saveAndFlush(session)).thenReturn(session);
+        when(sessionRepository.recountSeats(eq(id), any(LocalDateTime.class))).thenReturn(1);
 
         Session newSession = sessionService.update(id, session);
 
-        Mockito.verify(sessionRepository).save(session);
+        Mockito.verify(sessionRepository).saveAndFlush(session);
         assertEquals(session.getId(), newSession.getId());
     }
 
     @Test
-    @DisplayName("Should participate to a session")
-    public void giveIDSessionAndIDUser_thenUserParticipateToASession_shouldParticipateSession() {
+    @DisplayName("Should keep the timestamps of the stored session on update")
+    public void giveStoredSession_thenUpdate_shouldKeepTimestamps() {
+        LocalDateTime createdAt = LocalDateTime.of(2023, 1, 1, 0, 0);
+        LocalDateTime updatedAt = LocalDateTime.of(2023, 6, 1, 0, 0);
         Session session = new Session();
-        User user = new User();
+        when(sessionRepository.findById(id))
+                .thenReturn(Optional.of(new Session().setCreatedAt(createdAt).setUpdatedAt(updatedAt)));
+        when(sessionRepository.saveAndFlush(session)).thenReturn(session);
+        when(sessionRepository.recountSeats(eq(id), any(LocalDateTime.class))).thenReturn(1);
 
-        session.setId(sessionId);
-        session.setUsers(new ArrayList<>());
-        user.setId(id);
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(sessionId)).thenReturn(Optional.of(user));
+        sessionService.update(id, session);
+
+        assertEquals(createdAt, session.getCreatedAt());
+        assertEquals(updatedAt, session.getUpdatedAt());
+    }
+
+    @Test
+    @DisplayName("Should participate to a session")
+    public void giveIDSessionAndIDUser_thenUserParticipateToASession_shouldParticipateSession() {
+        when(sessionRepository.existsById(sessionId)).thenReturn(true);
+        when(userRepository.existsById(id)).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(sessionId), any(LocalDateTime.class))).thenReturn(1);
 
         sessionService.participate(sessionId, id);
 
-        assert(session.getUsers().contains(user));
+        Mockito.verify(sessionRepository).addParticipant(sessionId, id);
+        Mockito.verify(sessionListSnapshot).markDirty(sessionId);
+    }
+
+    @Test
+    @DisplayName("Should reject participation to a full session")
+    public void giveFullSession_thenUserParticipateToASession_shouldThrowConflictException() {
+        when(sessionRepository.existsById(sessionId)).thenReturn(true);
+        when(userRepository.existsById(id)).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(sessionId), any(LocalDateTime.class))).thenReturn(0);
+
+        assertThrows(ConflictException.class, () -> sessionService.participate(sessionId, id));
+        Mockito.verify(sessionRepository, Mockito.never()).addParticipant(sessionId, id);
+    }
+
+    @Test
+    @DisplayName("Should answer a duplicate, not a conflict, to a participant of a full session")
+    public void giveFullSessionAndParticipant_thenUserParticipateToASession_shouldThrowBadRequestException() {
+        when(sessionRepository.existsById(sessionId)).thenReturn(true);
+        when(userRepository.existsById(id)).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(sessionId), any(LocalDateTime.class))).thenReturn(0);
+        when(sessionRepository.isParticipant(sessionId, id)).thenReturn(true);
+
+        assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, id));
+        Mockito.verify(sessionRepository, Mockito.never()).addParticipant(sessionId, id);
     }
 
     @Test
     @DisplayName("Should not found session")
     public void giveIdSession_thenUserParticipateToASession_shouldNotFoundSession() {
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(sessionId)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, id));
     }
@@ -128,12 +229,8 @@ public class SessionServiceTest {
     @Test
     @DisplayName("Should not found user")
     public void giveIdSessionAndIdUser_thenUserParticipateSession_shouldNotFoundUser() {
-        Session session = new Session();
-
-        session.setId(sessionId);
-
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(id)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(sessionId)).thenReturn(true);
+        when(userRepository.existsById(id)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, id));
     }
@@ -141,24 +238,37 @@ public class SessionServiceTest {
     @Test
     @DisplayName("Should already participate to a session")
     public void giveIdSessionAndIdUser_thenUserParticipateToASession_shouldAlreadyParticipate() {
-        Session session = new Session();
-        User user = new User();
+        when(sessionRepository.existsById(sessionId)).thenReturn(true);
+        when(userRepository.existsById(id)).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(sessionId), any(LocalDateTime.class))).thenReturn(1);
+        when(sessionRepository.addParticipant(sessionId, id)).thenThrow(new DataIntegrityViolationException("duplicate"));
 
-        session.setId(sessionId);
-        user.setId(id);
-        List<User> users = List.of(user);
-        session.setUsers(users);
+        assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, id));
+    }
+
+    @Test
+    @DisplayName("Should count the participations by outcome")
+    public void giveParticipations_thenBindTo_shouldCountOutcomes() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        sessionService.bindTo(registry);
+        when(sessionRepository.existsById(sessionId)).thenReturn(true, true, false);
+        when(userRepository.existsById(id)).thenReturn(true);
+        when(sessionRepository.reserveSeat(eq(sessionId), any(LocalDateTime.class))).thenReturn(1, 0);
 
-        when(sessionRepository.findById(sessionId)).thenReturn(Optional.of(session));
-        when(userRepository.findById(id)).thenReturn(Optional.of(user));
+        sessionService.participate(sessionId, id);
+        assertThrows(ConflictException.class, () -> sessionService.participate(sessionId, id));
+        assertThrows(NotFoundException.class, () -> sessionService.participate(sessionId, id));
 
-        assertThrows(BadRequestException.class, () -> sessionService.participate(sessionId, id));
+        assertEquals(1, registry.get("session.participation").tag("outcome", "success").functionCounter().count());
+        assertEquals(1, registry.get("session.participation").tag("outcome", "conflict").functionCounter().count());
+        assertEquals(1, registry.get("session.participation").tag("outcome", "not_found").functionCounter().count());
+        assertEquals(0, registry.get("session.participation").tag("outcome", "duplicate").functionCounter().count());
     }
 
     @Test
     @DisplayName("Should no longer participate but return a NotFoundException ")
     public void giveIdSessionAndIdUser_thenUserNoLongerParticipateToASession_shouldThrowNotFoundException() {
-        when(sessionRepository.findById(id)).thenReturn(Optional.empty());
+        when(sessionRepository.existsById(id)).thenReturn(false);
 
         assertThrows(NotFoundException.class, () -> sessionService.noLongerParticipate(sessionId, id));
     }
@@ -166,10 +276,8 @@ public class SessionServiceTest {
     @Test
     @DisplayName("Should no longer participate but return a bad request exception ")
     public void giveIdSessionAndIdUser_thenUserNoLongerParticipateToASession_shouldBadRequestException() {
-        Session session = new Session();
-        session.setUsers(new ArrayList<>());
-
-        when(sessionRepository.findById(id)).thenReturn(Optional.of(session));
+        when(sessionRepository.existsById(id)).thenReturn(true);
+        when(sessionRepository.removeParticipant(sessionId, id)).thenReturn(0);
 
         assertThrows(BadRequestException.class, () -> sessionService.noLongerParticipate(sessionId, id));
     }
@@ -177,18 +285,13 @@ public class SessionServiceTest {
     @Test
     @DisplayName("Should no longer participate to a session ")
     public void giveIdSessionAndIdUser_thenNoLongerParticipateToASession_shouldNoLongerParticipate() {
-        Session session = new Session();
-        User user = new User();
-        user.setId(id);
-        session.setId(id);
-        session.setUsers(new ArrayList<>());
-        session.getUsers().add(user);
-
-        when(sessionRepository.findById(id)).thenReturn(Optional.of(session));
+        when(sessionRepository.existsById(id)).thenReturn(true);
+        when(sessionRepository.removeParticipant(sessionId, id)).thenReturn(1);
 
         sessionService.noLongerParticipate(sessionId, id);
 
-        assertFalse(session.getUsers().contains(user));
+        Mockito.verify(sessionRepository).removeParticipant(sessionId, id);
+        Mockito.verify(sessionRepository).releaseSeat(eq(sessionId), any(LocalDateTime.class));
+        Mockito.verify(sessionListSnapshot).markDirty(sessionId);
     }
 }
-
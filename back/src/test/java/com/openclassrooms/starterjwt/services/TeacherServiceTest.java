@@ -3,6 +3,7 @@ package com.openclassrooms.starterjwt.services;
 
 import com.openclassrooms.starterjwt.models.Teacher;
 import com.openclassrooms.starterjwt.repository.TeacherRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -19,6 +20,7 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -71,4 +73,45 @@ public class TeacherServiceTest {
         Mockito.verify(teacherRepository).findById(id);
         assertNull(newTeacher);
     }
+
+    @Test
+    @DisplayName("Should serve teachers from the catalog once loaded")
+    public void giveLoadedCatalog_thenFindTeachers_shouldNotQueryAgain() {
+        Teacher teacher = new Teacher().setId(id).setFirstName("Margot").setLastName("Delahaye");
+        when(teacherRepository.findAll()).thenReturn(List.of(teacher));
+
+        teacherService.refresh();
+
+        assertSame(teacher, teacherService.findById(id));
+        assertEquals(List.of(teacher), teacherService.findAll());
+        assertEquals(teacherService.getVersion().getETag(), teacherService.getVersion().getETag());
+        Mockito.verify(teacherRepository, Mockito.times(1)).findAll();
+        Mockito.verify(teacherRepository, Mockito.never()).findById(id);
+    }
+
+    @Test
+    @DisplayName("Should reload the catalog after an invalidation")
+    public void giveInvalidatedCatalog_thenFindAllTeachers_shouldReload() {
+        Teacher teacher = new Teacher().setId(id);
+        when(teacherRepository.findAll()).thenReturn(List.of(), List.of(teacher));
+
+        assertEquals(List.of(), teacherService.findAll());
+        teacherService.invalidate();
+
+        assertEquals(List.of(teacher), teacherService.findAll());
+        Mockito.verify(teacherRepository, Mockito.times(2)).findAll();
+    }
+
+    @Test
+    @DisplayName("Should publish the catalog size")
+    public void giveLoadedCatalog_thenBindTo_shouldPublishSize() {
+        when(teacherRepository.findAll()).thenReturn(List.of(new Teacher().setId(1L), new Teacher().setId(2L)));
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        teacherService.bindTo(registry);
+
+        teacherService.refresh();
+
+        assertEquals(2, registry.get("teacher.catalog.size").gauge().value());
+        assertEquals(0, registry.get("teacher.catalog.age").gauge().value(), 5);
+    }
 }
@@ -1,7 +1,10 @@
 package com.openclassrooms.starterjwt.services;
 
+import com.openclassrooms.starterjwt.exception.BadRequestException;
 import com.openclassrooms.starterjwt.models.User;
 import com.openclassrooms.starterjwt.repository.UserRepository;
+import com.openclassrooms.starterjwt.security.jwt.TokenRevocationRegistry;
+import com.openclassrooms.starterjwt.security.services.UserDetailsCache;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -12,10 +15,13 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -24,13 +30,19 @@ public class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @Mock
+    private TokenRevocationRegistry tokenRevocationRegistry;
+
     @InjectMocks
     private UserService userService;
     private final Long id = 1L;
 
     @BeforeEach
     public void setup() {
-        userService = new UserService(userRepository);
+        userService = new UserService(userRepository, userDetailsCache, tokenRevocationRegistry);
     }
 
     @Test
@@ -39,6 +51,8 @@ public class UserServiceTest {
         userService.delete(id);
 
         Mockito.verify(userRepository).deleteById(id);
+        Mockito.verify(userDetailsCache).evictById(id);
+        Mockito.verify(tokenRevocationRegistry).revoke(id);
     }
 
     @Test
@@ -64,4 +78,25 @@ public class UserServiceTest {
         assertNull(newUser);
     }
 
+    @Test
+    @DisplayName("Find users by IDs in one query")
+    public void giveIdsUsers_thenFindAllById_shouldReturnUsersInOrder() {
+        User first = new User().setId(1L);
+        User second = new User().setId(2L);
+        when(userRepository.findAllById(Arrays.asList(2L, 1L))).thenReturn(Arrays.asList(first, second));
+
+        List<User> users = userService.findAllById(Arrays.asList(2L, 1L, 2L));
+
+        Mockito.verify(userRepository).findAllById(Arrays.asList(2L, 1L));
+        assertEquals(Arrays.asList(second, first), users);
+    }
+
+    @Test
+    @DisplayName("Unknown user IDs")
+    public void giveUnknownIdsUsers_thenFindAllById_shouldThrowBadRequestException() {
+        when(userRepository.findAllById(Arrays.asList(1L, 2L))).thenReturn(List.of(new User().setId(1L)));
+
+        assertThrows(BadRequestException.class, () -> userService.findAllById(Arrays.asList(1L, 2L)));
+        assertThrows(BadRequestException.class, () -> userService.findAllById(Arrays.asList(1L, null)));
+    }
 }
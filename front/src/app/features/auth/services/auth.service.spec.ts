@@ -48,4 +48,22 @@ describe('AuthService', () => {
 
         expect(httpClientSpy.post).toHaveBeenCalledWith(url, login);
     })
+
+    it('should refresh the tokens of a user', () => {
+        const url = 'api/auth/refresh';
+        jest.spyOn(httpClientSpy, 'post').mockReturnValue(of());
+
+        service.refresh("refreshToken");
+
+        expect(httpClientSpy.post).toHaveBeenCalledWith(url, { refreshToken: "refreshToken" });
+    })
+
+    it('should log out the refresh token of a user', () => {
+        const url = 'api/auth/logout';
+        jest.spyOn(httpClientSpy, 'post').mockReturnValue(of());
+
+        service.logout("refreshToken");
+
+        expect(httpClientSpy.post).toHaveBeenCalledWith(url, { refreshToken: "refreshToken" });
+    })
 })
@@ -21,4 +21,12 @@ export class AuthService {
   public login(loginRequest: LoginRequest): Observable<SessionInformation> {
     return this.httpClient.post<SessionInformation>(`${this.pathService}/login`, loginRequest);
   }
+
+  public refresh(refreshToken: string): Observable<SessionInformation> {
+    return this.httpClient.post<SessionInformation>(`${this.pathService}/refresh`, { refreshToken });
+  }
+
+  public logout(refreshToken: string): Observable<void> {
+    return this.httpClient.post<void>(`${this.pathService}/logout`, { refreshToken });
+  }
 }
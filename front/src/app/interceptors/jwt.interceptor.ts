@@ -1,19 +1,53 @@
-import { HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
-import { Injectable } from "@angular/core";
+import { HttpErrorResponse, HttpEvent, HttpHandler, HttpInterceptor, HttpRequest } from "@angular/common/http";
+import { Injectable, Injector } from "@angular/core";
+import { Observable, throwError } from 'rxjs';
+import { catchError, finalize, shareReplay, switchMap, tap } from 'rxjs/operators';
+import { AuthService } from '../features/auth/services/auth.service';
+import { SessionInformation } from '../interfaces/sessionInformation.interface';
 import { SessionService } from '../services/session.service';
 
 @Injectable({ providedIn: 'root' })
 export class JwtInterceptor implements HttpInterceptor {
-  constructor(private sessionService: SessionService) {}
+  // Shared by the requests rejected while a renewal is in progress: a refresh token can only be used once.
+  private refreshing: Observable<SessionInformation> | null = null;
 
-  public intercept(request: HttpRequest<any>, next: HttpHandler) {
-    if (this.sessionService.isLogged) {
-      request = request.clone({
-        setHeaders: {
-          Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
-        },
-      });
+  constructor(private sessionService: SessionService, private injector: Injector) {}
+
+  public intercept(request: HttpRequest<any>, next: HttpHandler): Observable<HttpEvent<any>> {
+    if (!this.sessionService.isLogged) {
+      return next.handle(request);
+    }
+    return next.handle(this.authorize(request)).pipe(
+      catchError((error) => {
+        if (!(error instanceof HttpErrorResponse) || error.status !== 401 || request.url.includes('api/auth/')) {
+          return throwError(() => error);
+        }
+        // The access token is short-lived: renew it once, then replay the request
+        return this.refresh().pipe(switchMap(() => next.handle(this.authorize(request))));
+      })
+    );
+  }
+
+  private authorize(request: HttpRequest<any>): HttpRequest<any> {
+    return request.clone({
+      setHeaders: {
+        Authorization: `Bearer ${this.sessionService.sessionInformation!.token}`,
+      },
+    });
+  }
+
+  private refresh(): Observable<SessionInformation> {
+    if (!this.refreshing) {
+      // Resolved lazily: AuthService needs HttpClient, which is built with the interceptors
+      this.refreshing = this.injector.get(AuthService).refresh(this.sessionService.sessionInformation!.refreshToken).pipe(
+        tap({
+          next: (sessionInformation) => this.sessionService.logIn(sessionInformation),
+          error: () => this.sessionService.logOut(),
+        }),
+        finalize(() => this.refreshing = null),
+        shareReplay(1)
+      );
     }
-    return next.handle(request);
+    return this.refreshing;
   }
 }
@@ -1,13 +1,20 @@
 import { TestBed } from '@angular/core/testing';
 import { expect } from '@jest/globals';
 import { SessionService } from './session.service';
-import { firstValueFrom } from 'rxjs';
+import { firstValueFrom, of } from 'rxjs';
+import { AuthService } from '../features/auth/services/auth.service';
 
 describe('SessionService', () => {
   let service: SessionService;
+  let authService: any;
 
   beforeEach(() => {
-    TestBed.configureTestingModule({});
+    authService = {
+      logout: jest.fn().mockReturnValue(of(undefined)),
+    }
+    TestBed.configureTestingModule({
+      providers: [{ provide: AuthService, useValue: authService }],
+    });
     service = TestBed.inject(SessionService);
   });
 
@@ -23,6 +30,7 @@ describe('SessionService', () => {
   it ('should log in a user ', () => {
     let user = {  
       token: "token",
+      refreshToken: "refreshToken",
       type: "type",
       id : 1,
       username : "yoan",
@@ -44,4 +52,23 @@ describe('SessionService', () => {
     expect(service.sessionInformation).toBeUndefined();
     expect(service.isLogged).toBeFalsy();
   })
+
+  it ('should log out the refresh token of a user ', () => {
+    service.logIn({
+      token: "token",
+      refreshToken: "refreshToken",
+      type: "type",
+      id : 1,
+      username : "yoan",
+      lastName: "yoan",
+      firstName: "test",
+      admin : false,
+    });
+
+    service.logOut();
+
+    expect(authService.logout).toHaveBeenCalledWith("refreshToken");
+    expect(service.sessionInformation).toBeUndefined();
+    expect(service.isLogged).toBeFalsy();
+  })
 });
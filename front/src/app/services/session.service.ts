@@ -1,5 +1,6 @@
-import { Injectable } from '@angular/core';
+import { Injectable, Injector } from '@angular/core';
 import { BehaviorSubject, Observable } from 'rxjs';
+import { AuthService } from '../features/auth/services/auth.service';
 import { SessionInformation } from '../interfaces/sessionInformation.interface';
 
 @Injectable({
@@ -12,6 +13,8 @@ export class SessionService {
 
   private isLoggedSubject = new BehaviorSubject<boolean>(this.isLogged);
 
+  constructor(private injector: Injector) {}
+
   public $isLogged(): Observable<boolean> {
     return this.isLoggedSubject.asObservable();
   }
@@ -23,6 +26,13 @@ export class SessionService {
   }
 
   public logOut(): void {
+    const refreshToken = this.sessionInformation?.refreshToken;
+    if (refreshToken) {
+      // Deletes the refresh token on the server, which would otherwise stay valid for its whole lifetime.
+      // Resolved lazily like in JwtInterceptor: AuthService needs HttpClient, built with the interceptors.
+      // The local state is cleared whatever the answer.
+      this.injector.get(AuthService).logout(refreshToken).subscribe({ error: () => undefined });
+    }
     this.sessionInformation = undefined;
     this.isLogged = false;
     this.next();